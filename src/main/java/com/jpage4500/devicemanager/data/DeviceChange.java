@@ -0,0 +1,118 @@
+package com.jpage4500.devicemanager.data;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * describes what changed for a single device so listeners can update only what's needed
+ */
+public class DeviceChange {
+    public enum Type {
+        // device showed up in adb device list (new or back online)
+        ADDED,
+        // device is no longer in adb device list
+        REMOVED,
+        // one or more fields changed
+        CHANGED,
+    }
+
+    public enum Field {
+        STATE,
+        BUSY,
+        NAME,
+        PHONE,
+        IMEI,
+        PROPERTIES,
+        CUSTOM_PROPERTIES,
+        APP_VERSIONS,
+        BATTERY,
+        FREE_SPACE,
+    }
+
+    public final Type type;
+    public final Device device;
+    public final Set<Field> fieldSet;
+
+    public DeviceChange(Type type, Device device, Set<Field> fieldSet) {
+        this.type = type;
+        this.device = device;
+        this.fieldSet = Collections.unmodifiableSet(fieldSet);
+    }
+
+    public static DeviceChange added(Device device) {
+        return new DeviceChange(Type.ADDED, device, EnumSet.allOf(Field.class));
+    }
+
+    public static DeviceChange removed(Device device) {
+        return new DeviceChange(Type.REMOVED, device, EnumSet.of(Field.STATE));
+    }
+
+    public static DeviceChange changed(Device device, Field field, Field... fields) {
+        return new DeviceChange(Type.CHANGED, device, EnumSet.of(field, fields));
+    }
+
+    public boolean hasField(Field field) {
+        return fieldSet.contains(field);
+    }
+
+    @Override
+    public String toString() {
+        return type + ":" + device.serial + ":" + fieldSet;
+    }
+
+    /**
+     * copy of device values at a point in time; used to find which fields changed after a refresh
+     */
+    public static class Snapshot {
+        private final boolean isOnline;
+        private final String status;
+        private final String nickname;
+        private final String phone;
+        private final String imei;
+        private final Map<String, String> propMap;
+        private final Map<String, String> customPropertyMap;
+        private final Map<String, String> customAppVersionList;
+        private final Integer batteryLevel;
+        private final Device.PowerStatus powerStatus;
+        private final Long freeSpace;
+
+        public Snapshot(Device device) {
+            isOnline = device.isOnline;
+            status = device.status;
+            nickname = device.nickname;
+            phone = device.phone;
+            imei = device.imei;
+            propMap = copy(device.propMap);
+            customPropertyMap = copy(device.customPropertyMap);
+            customAppVersionList = copy(device.customAppVersionList);
+            batteryLevel = device.batteryLevel;
+            powerStatus = device.powerStatus;
+            freeSpace = device.freeSpace;
+        }
+
+        private static Map<String, String> copy(Map<String, String> map) {
+            return map != null ? new HashMap<>(map) : null;
+        }
+
+        /**
+         * @return fields of device that no longer match this snapshot
+         */
+        public EnumSet<Field> diff(Device device) {
+            EnumSet<Field> fieldSet = EnumSet.noneOf(Field.class);
+            if (isOnline != device.isOnline || !Objects.equals(status, device.status)) fieldSet.add(Field.STATE);
+            if (!Objects.equals(nickname, device.nickname)) fieldSet.add(Field.NAME);
+            if (!Objects.equals(phone, device.phone)) fieldSet.add(Field.PHONE);
+            if (!Objects.equals(imei, device.imei)) fieldSet.add(Field.IMEI);
+            if (!Objects.equals(propMap, device.propMap)) fieldSet.add(Field.PROPERTIES);
+            if (!Objects.equals(customPropertyMap, device.customPropertyMap)) fieldSet.add(Field.CUSTOM_PROPERTIES);
+            if (!Objects.equals(customAppVersionList, device.customAppVersionList)) fieldSet.add(Field.APP_VERSIONS);
+            if (!Objects.equals(batteryLevel, device.batteryLevel) || powerStatus != device.powerStatus) fieldSet.add(Field.BATTERY);
+            if (!Objects.equals(freeSpace, device.freeSpace)) fieldSet.add(Field.FREE_SPACE);
+            return fieldSet;
+        }
+    }
+}
@@ -1,57 +1,65 @@
 package com.jpage4500.devicemanager.data;
 
-import com.jpage4500.devicemanager.utils.TextUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
+/**
+ * single logcat entry; created by {@link LogcatParser}
+ */
 public class LogEntry {
-    private static final Logger log = LoggerFactory.getLogger(LogEntry.class);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
 
-    public String date;     // formatted date
-    public String tid;
-    public String pid;
+    public int tid;
+    public int pid;
     public String app;      // set dynamically while logging is running
-    public String level;
-    public String tag;
-    public String message;
+    public String device;   // device name; only set when logs from multiple devices are merged
+    public String level;    // interned
+    public String tag;      // interned
+
+    // epoch time in ms
+    public long timestamp;
+    // sub-ms part of time (0-999us); 0 if device doesn't report it
+    public int micros;
+
+    // message is sliced from the source line the first time it's needed
+    private String line;
+    private int messageStart;
+    private String message;
+    private String date;
 
-    public Long timestamp;
+    public LogEntry() {
+    }
 
     /**
-     * 10-16 11:34:17.824  2063  2063 D PluginAODManager: onNotificationInfoUpdated() 0|com.test.pm|2000|null|10400
-     * 10-16 11:34:17.825  2063  2063 I AODNotificationManager: updateVisibleNotifications: 4
-     * 10-16 11:34:17.858  2063  2063 D QS      : setQSExpansion 0.0 -588.0
-     * 10-16 11:34:18.310  1142  1853 D SemNscXgbMsL1: Probability - Non real time: [0.79989874]
-     * 05-13 15:20:12.334  1195  1195 W adbd    : timeout expired while flushing socket, closing
-     * 05-13 15:20:12.876  3192  4081 D ModemODPMPoller: Current Modem ODPM (mw): 69, threshold: 800
+     * set message as a range of the original logcat line; trailing whitespace is removed when read
      */
-    public LogEntry(String line, SimpleDateFormat dateFormat, int year) {
-        String[] lineArr = line.split("\\s+", 6);
-        if (lineArr.length < 6) return;
-        String dayStr = lineArr[0];
-        String timeStr = lineArr[1];
-        // remove micro-seconds (could be useful to parse but not necessary to display today)
-        if (timeStr.length() > 4) timeStr = timeStr.substring(0, timeStr.length() - 4);
-        // NOTE: appending year is necessary to parse to Date correctly
-        date = year + "-" + dayStr + " " + timeStr;
-        try {
-            Date eventDate = dateFormat.parse(date);
-            timestamp = eventDate.getTime();
-        } catch (Exception e) {
-            System.out.println("Exception: " + date);
-        }
+    void setMessage(String line, int messageStart) {
+        this.line = line;
+        this.messageStart = messageStart;
+        this.message = null;
+    }
 
-        pid = lineArr[2];
-        tid = lineArr[3];
-        level = lineArr[4];
-        message = lineArr[5];
-        int tagPos = TextUtils.indexOf(message, ':');
-        if (tagPos > 0) {
-            tag = message.substring(0, tagPos).trim();
-            message = message.substring(tagPos + 1).trim();
+    public void setMessage(String message) {
+        this.line = null;
+        this.message = message;
+    }
+
+    public String getMessage() {
+        if (message == null && line != null) {
+            int end = line.length();
+            while (end > messageStart && line.charAt(end - 1) <= ' ') end--;
+            message = line.substring(messageStart, end);
+            line = null;
         }
+        return message;
+    }
+
+    /**
+     * @return formatted date (yyyy-MM-dd HH:mm:ss)
+     */
+    public String getDate() {
+        if (date == null) date = DATE_FORMAT.format(Instant.ofEpochMilli(timestamp));
+        return date;
     }
 }
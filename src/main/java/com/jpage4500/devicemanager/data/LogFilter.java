@@ -1,16 +1,36 @@
 package com.jpage4500.devicemanager.data;
 
 import com.jpage4500.devicemanager.table.LogsTableModel;
+import com.jpage4500.devicemanager.utils.IgnoreCaseSearch;
 import com.jpage4500.devicemanager.utils.TextUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
 
+/**
+ * log filter; see LOGS.md for syntax
+ * - parsed into a tree of nodes (&&, ||, !, expressions, regex, ranges)
+ * - children of && and || are ordered so cheap checks (level, pid) run before message scans
+ */
 public class LogFilter {
     private static final Logger log = LoggerFactory.getLogger(LogFilter.class);
+    // filters saved before boolean expressions were supported; ALL must match
     List<FilterExpression> filterList;
+    // filter text; parsed into root
+    String filterText;
+    private transient Node root;
 
     public enum Expression {
         EQUALS("is"),
@@ -69,123 +89,470 @@ public class LogFilter {
             return sb.toString();
         }
 
+        // compiled form of this expression; created on first use (filters loaded from preferences aren't compiled)
+        private transient Predicate<LogEntry> predicate;
+
         public boolean isMatch(LogEntry logEntry) {
-            boolean isMatch;
-            if (column != null) {
-                String logValue = null;
-                switch (column) {
-                    case DATE -> logValue = logEntry.date;
-                    case APP -> logValue = logEntry.app;
-                    case TID -> logValue = logEntry.tid;
-                    case PID -> logValue = logEntry.pid;
-                    case LEVEL -> {
-                        logValue = logEntry.level;
-                        //log.trace("isMatch: {}, val:{}, expr:{}", logValue, value, expression);
-                        if (value != null && expression == Expression.STARTS_WITH) {
-                            switch (value) {
-                                case "D":
-                                    return TextUtils.equalsIgnoreCaseAny(logValue, "D", "I", "W", "E");
-                                case "I":
-                                    return TextUtils.equalsIgnoreCaseAny(logValue, "I", "W", "E");
-                                case "W":
-                                    return TextUtils.equalsIgnoreCaseAny(logValue, "W", "E");
-                            }
-                        }
-                    }
-                    case TAG -> logValue = logEntry.tag;
-                    case MSG -> logValue = logEntry.message;
-                }
-                isMatch = evaluateExpression(expression, logValue);
-            } else {
+            if (predicate == null) predicate = compile();
+            return predicate.test(logEntry);
+        }
+
+        /**
+         * convert expression into a Predicate specific to the column and expression type
+         * - search text is case-folded once instead of on every row
+         * - level "X+" compares log priority instead of a set of level strings
+         * - pid/tid compare ints instead of converting each row to a String
+         */
+        Predicate<LogEntry> compile() {
+            Predicate<LogEntry> result;
+            if (column == null) {
                 // match text from one of: message, app, tag
-                isMatch = evaluateExpression(expression, logEntry.message) ||
-                        evaluateExpression(expression, logEntry.app) ||
-                        evaluateExpression(expression, logEntry.tag);
+                Predicate<String> text = compileText();
+                result = logEntry -> text.test(logEntry.getMessage()) || text.test(logEntry.app) || text.test(logEntry.tag);
+            } else {
+                result = switch (column) {
+                    case DEVICE -> compileField(logEntry -> logEntry.device);
+                    case DATE -> compileField(LogEntry::getDate);
+                    case APP -> compileField(logEntry -> logEntry.app);
+                    case TID -> compileNumber(logEntry -> logEntry.tid);
+                    case PID -> compileNumber(logEntry -> logEntry.pid);
+                    case LEVEL -> compileLevel();
+                    case TAG -> compileField(logEntry -> logEntry.tag);
+                    case MSG -> compileField(LogEntry::getMessage);
+                };
             }
-            return isNotExpression != isMatch;
+            return isNotExpression ? result.negate() : result;
+        }
+
+        private Predicate<LogEntry> compileField(Function<LogEntry, String> field) {
+            Predicate<String> text = compileText();
+            return logEntry -> text.test(field.apply(logEntry));
         }
 
-        private boolean evaluateExpression(Expression expression, String searchField) {
-            boolean isMatch = false;
-            if (expression == null) return false;
-            switch (expression) {
-                case EQUALS -> isMatch = TextUtils.equalsIgnoreCase(searchField, value);
-                case CONTAINS -> isMatch = TextUtils.containsAny(searchField, true, value);
-                case STARTS_WITH -> isMatch = TextUtils.startsWithAny(searchField, true, value);
-                case ENDS_WITH -> isMatch = TextUtils.endsWithAny(searchField, true, value);
+        private Predicate<LogEntry> compileNumber(ToIntFunction<LogEntry> field) {
+            if (expression == Expression.EQUALS && value != null) {
+                try {
+                    int number = Integer.parseInt(value.trim());
+                    return logEntry -> field.applyAsInt(logEntry) == number;
+                } catch (NumberFormatException ignored) {
+                }
             }
-            return isMatch;
+            return compileField(logEntry -> String.valueOf(field.applyAsInt(logEntry)));
         }
-    }
 
-    public boolean isMatch(LogEntry logEntry) {
-        if (filterList == null) return false;
-        // iterate until 1 filter is 'false'
-        for (FilterExpression filter : filterList) {
-            if (!filter.isMatch(logEntry)) return false;
+        private Predicate<LogEntry> compileLevel() {
+            // "level:W+" -> W or higher
+            int minPriority = value != null && value.length() == 1 ? getPriority(value) : 0;
+            if (expression == Expression.STARTS_WITH && minPriority > 0) {
+                return logEntry -> getPriority(logEntry.level) >= minPriority;
+            }
+            return compileField(logEntry -> logEntry.level);
         }
-        // all filters matched - return true
-        return true;
-    }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for (FilterExpression expression : filterList) {
-            if (!sb.isEmpty()) sb.append(" && ");
-            sb.append(expression);
+        /**
+         * @return case-insensitive test of a single field
+         */
+        private Predicate<String> compileText() {
+            if (expression == null) return text -> false;
+            // "column:*"
+            if (value == null) return Objects::isNull;
+            String searchValue = value;
+            int len = searchValue.length();
+            return switch (expression) {
+                case EQUALS -> searchValue::equalsIgnoreCase;
+                case STARTS_WITH -> text -> text != null && text.regionMatches(true, 0, searchValue, 0, len);
+                case ENDS_WITH -> text -> text != null && text.regionMatches(true, text.length() - len, searchValue, 0, len);
+                case CONTAINS -> {
+                    if (len == 0) yield text -> !TextUtils.isEmpty(text);
+                    IgnoreCaseSearch search = new IgnoreCaseSearch(searchValue);
+                    yield search::contains;
+                }
+            };
         }
-        return sb.toString();
     }
 
-    public static LogFilter parse(String filterText) {
-        if (filterText == null) return null;
-        LogFilter filter = new LogFilter();
-        filter.filterList = new ArrayList<>();
-        // TODO: support more than just "&&" (ie: "||")
-        String[] filterArr = filterText.split(" && ");
-        for (String entry : filterArr) {
-            String[] entryArr = entry.split(":", 2);
-            String key = entryArr[0].trim();
-            String value = entryArr[1].trim();
-            LogFilter.FilterExpression expr = new LogFilter.FilterExpression();
-            if (TextUtils.notEmpty(key)) {
-                String colName = key.toUpperCase();
-                try {
-                    expr.column = LogsTableModel.Columns.valueOf(colName);
-                } catch (IllegalArgumentException e) {
-                }
+    /**
+     * @return log priority (V=2 .. F=7) or 0 if unknown
+     */
+    static int getPriority(String level) {
+        if (level == null || level.isEmpty()) return 0;
+        return switch (Character.toUpperCase(level.charAt(0))) {
+            case 'V' -> 2;
+            case 'D' -> 3;
+            case 'I' -> 4;
+            case 'W' -> 5;
+            case 'E' -> 6;
+            case 'F', 'A' -> 7;
+            default -> 0;
+        };
+    }
+
+    /**
+     * base class of all parsed filter nodes
+     */
+    public abstract static class Node {
+        public abstract boolean isMatch(LogEntry logEntry);
+
+        /**
+         * @return relative cost of evaluating this node (used to order && / || children)
+         */
+        public abstract int getCost();
+    }
+
+    /**
+     * ALL children must match; children are ordered cheapest first
+     */
+    public static class AndNode extends Node {
+        public final List<Node> childList;
+
+        public AndNode(List<Node> nodeList) {
+            childList = flatten(nodeList, AndNode.class);
+        }
+
+        @Override
+        public boolean isMatch(LogEntry logEntry) {
+            for (Node child : childList) {
+                if (!child.isMatch(logEntry)) return false;
             }
-            if (TextUtils.equalsIgnoreCaseAny(value, "*", "")) {
-                filter.filterList.add(expr);
-                continue;
+            return true;
+        }
+
+        @Override
+        public int getCost() {
+            return sumCost(childList);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Node child : childList) {
+                if (!sb.isEmpty()) sb.append(" && ");
+                if (child instanceof OrNode) sb.append("(").append(child).append(")");
+                else sb.append(child);
             }
-            char firstChar = value.charAt(0);
-            if (firstChar == '!') {
-                expr.isNotExpression = true;
-                firstChar = value.charAt(1);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * ANY child must match; children are ordered cheapest first
+     */
+    public static class OrNode extends Node {
+        public final List<Node> childList;
+
+        public OrNode(List<Node> nodeList) {
+            childList = flatten(nodeList, OrNode.class);
+        }
+
+        @Override
+        public boolean isMatch(LogEntry logEntry) {
+            for (Node child : childList) {
+                if (child.isMatch(logEntry)) return true;
             }
-            if (firstChar == '*') {
-                expr.expression = Expression.ENDS_WITH;
+            return false;
+        }
+
+        @Override
+        public int getCost() {
+            return sumCost(childList);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Node child : childList) {
+                if (!sb.isEmpty()) sb.append(" || ");
+                sb.append(child);
             }
-            char lastChar = value.charAt(value.length() - 1);
-            if (lastChar == '*' || (expr.column == LogsTableModel.Columns.LEVEL && lastChar == '+')) {
-                if (expr.expression == Expression.ENDS_WITH) expr.expression = Expression.CONTAINS;
-                else expr.expression = Expression.STARTS_WITH;
+            return sb.toString();
+        }
+    }
+
+    public static class NotNode extends Node {
+        public final Node child;
+
+        public NotNode(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        public boolean isMatch(LogEntry logEntry) {
+            return !child.isMatch(logEntry);
+        }
+
+        @Override
+        public int getCost() {
+            return child.getCost();
+        }
+
+        @Override
+        public String toString() {
+            if (child instanceof AndNode || child instanceof OrNode) return "!(" + child + ")";
+            return "!" + child;
+        }
+    }
+
+    /**
+     * single column expression (ie: "tag:HD_*")
+     */
+    public static class ExpressionNode extends Node {
+        public final FilterExpression expression;
+
+        public ExpressionNode(FilterExpression expression) {
+            this.expression = expression;
+            expression.predicate = expression.compile();
+        }
+
+        @Override
+        public boolean isMatch(LogEntry logEntry) {
+            return expression.isMatch(logEntry);
+        }
+
+        @Override
+        public int getCost() {
+            int cost = getColumnCost(expression.column);
+            return expression.expression == Expression.CONTAINS ? cost * 2 : cost;
+        }
+
+        @Override
+        public String toString() {
+            return expression.toString();
+        }
+    }
+
+    /**
+     * regular expression search of a column (ie: "msg:re:timeout \\d+")
+     */
+    public static class RegexNode extends Node {
+        public final LogsTableModel.Columns column;
+        public final Pattern pattern;
+
+        public RegexNode(LogsTableModel.Columns column, Pattern pattern) {
+            this.column = column;
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean isMatch(LogEntry logEntry) {
+            if (column == null) {
+                return find(logEntry.getMessage()) || find(logEntry.app) || find(logEntry.tag);
             }
-            int stPos = 0;
-            if (expr.isNotExpression) stPos++;
-            if (expr.expression == Expression.ENDS_WITH || expr.expression == Expression.CONTAINS) stPos++;
+            return find(getTextValue(logEntry, column));
+        }
+
+        private boolean find(String text) {
+            return text != null && pattern.matcher(text).find();
+        }
 
-            int endPos = value.length();
-            if (expr.expression == Expression.STARTS_WITH || expr.expression == Expression.CONTAINS) endPos--;
+        @Override
+        public int getCost() {
+            return getColumnCost(column) * 5;
+        }
+
+        @Override
+        public String toString() {
+            return (column == null ? "*" : column.name().toLowerCase()) + ":re:" + pattern.pattern();
+        }
+    }
+
+    /**
+     * inclusive range of a numeric column (ie: "pid:100..200", "level:I..W", "date:12:00..12:30")
+     */
+    public static class RangeNode extends Node {
+        public final LogsTableModel.Columns column;
+        public final long min;
+        public final long max;
+        // date range is a time of day (local time) instead of a full date
+        private final boolean isTimeOfDay;
+        private final ZoneRules zoneRules;
+        // zone offset of the last entry checked and the time range it's valid for (between DST changes)
+        private volatile ZoneOffsetRange offsetRange;
+        private final String text;
+
+        private record ZoneOffsetRange(long startMs, long endMs, long offsetMs) {
+        }
 
-            expr.value = value.substring(stPos, endPos);
+        RangeNode(LogsTableModel.Columns column, long min, long max, boolean isTimeOfDay, String text) {
+            this.column = column;
+            this.min = min;
+            this.max = max;
+            this.isTimeOfDay = isTimeOfDay;
+            this.text = text;
+            zoneRules = ZoneId.systemDefault().getRules();
+        }
+
+        /**
+         * @return local time of day (ms since midnight) for timestamp
+         */
+        private long getTimeOfDay(long timestamp) {
+            // NOTE: filters run on multiple threads; offsetRange is replaced (never changed) so it's safe to share
+            ZoneOffsetRange range = offsetRange;
+            if (range == null || timestamp < range.startMs || timestamp >= range.endMs) {
+                Instant instant = Instant.ofEpochMilli(timestamp);
+                ZoneOffsetTransition prev = zoneRules.previousTransition(instant.plusMillis(1));
+                ZoneOffsetTransition next = zoneRules.nextTransition(instant);
+                range = new ZoneOffsetRange(prev != null ? prev.toEpochSecond() * 1000 : Long.MIN_VALUE,
+                        next != null ? next.toEpochSecond() * 1000 : Long.MAX_VALUE,
+                        zoneRules.getOffset(instant).getTotalSeconds() * 1000L);
+                offsetRange = range;
+            }
+            return Math.floorMod(timestamp + range.offsetMs, MS_PER_DAY);
+        }
+
+        @Override
+        public boolean isMatch(LogEntry logEntry) {
+            long value = switch (column) {
+                case PID -> logEntry.pid;
+                case TID -> logEntry.tid;
+                case LEVEL -> getPriority(logEntry.level);
+                case DATE -> isTimeOfDay ? getTimeOfDay(logEntry.timestamp) : logEntry.timestamp;
+                default -> Long.MIN_VALUE;
+            };
+            return value >= min && value <= max;
+        }
 
-            //log.trace("parse: expr:{}", GsonHelper.toJson(expr));
-            filter.filterList.add(expr);
+        @Override
+        public int getCost() {
+            return 1;
         }
+
+        @Override
+        public String toString() {
+            return column.name().toLowerCase() + ":" + text;
+        }
+    }
+
+    private static final long MS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    /**
+     * combine children of the same type (ie: a && (b && c)) and order cheapest first
+     */
+    private static List<Node> flatten(List<Node> nodeList, Class<? extends Node> type) {
+        List<Node> resultList = new ArrayList<>();
+        for (Node node : nodeList) {
+            if (type == AndNode.class && node instanceof AndNode andNode) resultList.addAll(andNode.childList);
+            else if (type == OrNode.class && node instanceof OrNode orNode) resultList.addAll(orNode.childList);
+            else resultList.add(node);
+        }
+        // stable sort; equal cost keeps the order user entered
+        resultList.sort(Comparator.comparingInt(Node::getCost));
+        return resultList;
+    }
+
+    private static int sumCost(List<Node> nodeList) {
+        int cost = 0;
+        for (Node node : nodeList) cost += node.getCost();
+        return cost;
+    }
+
+    /**
+     * @return relative cost of reading and comparing a column
+     */
+    private static int getColumnCost(LogsTableModel.Columns column) {
+        if (column == null) return 30; // message + app + tag
+        return switch (column) {
+            case LEVEL, PID, TID -> 1;
+            case DEVICE, APP, TAG -> 2;
+            case DATE -> 8;
+            case MSG -> 10;
+        };
+    }
+
+    static String getTextValue(LogEntry logEntry, LogsTableModel.Columns column) {
+        return switch (column) {
+            case DEVICE -> logEntry.device;
+            case DATE -> logEntry.getDate();
+            case APP -> logEntry.app;
+            case TID -> String.valueOf(logEntry.tid);
+            case PID -> String.valueOf(logEntry.pid);
+            case LEVEL -> logEntry.level;
+            case TAG -> logEntry.tag;
+            case MSG -> logEntry.getMessage();
+        };
+    }
+
+    /**
+     * @return root node or null if filter is empty
+     */
+    public Node getRoot() {
+        if (root == null) {
+            if (filterText != null) {
+                root = new LogFilterParser(filterText).parse();
+            } else if (filterList != null && !filterList.isEmpty()) {
+                List<Node> nodeList = new ArrayList<>();
+                for (FilterExpression expression : filterList) nodeList.add(new ExpressionNode(expression));
+                root = new AndNode(nodeList);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * @return true if log entry matches filter; an empty filter matches everything
+     */
+    public boolean isMatch(LogEntry logEntry) {
+        Node node = getRoot();
+        return node == null || node.isMatch(logEntry);
+    }
+
+    @Override
+    public String toString() {
+        Node node = getRoot();
+        return node != null ? node.toString() : "";
+    }
+
+    public static LogFilter parse(String filterText) {
+        if (filterText == null) return null;
+        LogFilter filter = new LogFilter();
+        filter.filterText = filterText;
+        filter.getRoot();
         return filter;
     }
 
+    /**
+     * @param value value part of an expression (ie: "!HD_*" or "\"hello world\"")
+     */
+    static FilterExpression parseExpression(LogsTableModel.Columns column, String value) {
+        LogFilter.FilterExpression expr = new LogFilter.FilterExpression();
+        expr.column = column;
+        if (TextUtils.equalsIgnoreCaseAny(value, "*", "")) {
+            // match any
+            return expr;
+        }
+        if (value.charAt(0) == '!') {
+            expr.isNotExpression = true;
+            value = value.substring(1);
+        }
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            // quoted value: contains (may include spaces or operators)
+            expr.expression = Expression.CONTAINS;
+            expr.value = value.substring(1, value.length() - 1);
+            return expr;
+        }
+        if (value.isEmpty()) {
+            expr.value = value;
+            return expr;
+        }
+        char firstChar = value.charAt(0);
+        if (firstChar == '*') {
+            expr.expression = Expression.ENDS_WITH;
+        }
+        char lastChar = value.charAt(value.length() - 1);
+        if (value.length() > 1 && (lastChar == '*' || (expr.column == LogsTableModel.Columns.LEVEL && lastChar == '+'))) {
+            if (expr.expression == Expression.ENDS_WITH) expr.expression = Expression.CONTAINS;
+            else expr.expression = Expression.STARTS_WITH;
+        } else if (value.length() == 1 && expr.column == LogsTableModel.Columns.LEVEL && lastChar == '+') {
+            expr.expression = Expression.STARTS_WITH;
+        }
+        int stPos = 0;
+        if (expr.expression == Expression.ENDS_WITH || expr.expression == Expression.CONTAINS) stPos++;
+
+        int endPos = value.length();
+        if (expr.expression == Expression.STARTS_WITH || expr.expression == Expression.CONTAINS) endPos--;
+
+        expr.value = value.substring(stPos, Math.max(stPos, endPos));
+        //log.trace("parseExpression: expr:{}", GsonHelper.toJson(expr));
+        return expr;
+    }
+
 }
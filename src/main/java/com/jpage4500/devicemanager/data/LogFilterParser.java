@@ -0,0 +1,235 @@
+package com.jpage4500.devicemanager.data;
+
+import com.jpage4500.devicemanager.table.LogsTableModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * parses filter text into a tree of {@link LogFilter.Node}
+ * <pre>
+ * or    := and ( "||" and )*
+ * and   := unary ( "&&" unary )*
+ * unary := "!" unary | "(" or ")" | term
+ * term  := [column ":"] value | [column ":"] "re:" regex | column ":" min ".." max
+ * </pre>
+ * parser is lenient since it runs as the user types: missing ")" are added, empty terms are ignored
+ * and invalid regex/range values are matched as text
+ */
+class LogFilterParser {
+    private static final Logger log = LoggerFactory.getLogger(LogFilterParser.class);
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd H:mm[:ss][.SSS]");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("H:mm[:ss][.SSS]");
+
+    private final String text;
+    private int pos;
+
+    LogFilterParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return root node or null if text doesn't contain any terms
+     */
+    LogFilter.Node parse() {
+        List<LogFilter.Node> nodeList = new ArrayList<>();
+        while (true) {
+            LogFilter.Node node = parseOr();
+            if (node != null) nodeList.add(node);
+            skipSpaces();
+            if (pos >= text.length()) break;
+            // unmatched ")"; ignore it
+            pos++;
+        }
+        if (nodeList.isEmpty()) return null;
+        else if (nodeList.size() == 1) return nodeList.get(0);
+        return new LogFilter.AndNode(nodeList);
+    }
+
+    private LogFilter.Node parseOr() {
+        List<LogFilter.Node> nodeList = new ArrayList<>();
+        addNode(nodeList, parseAnd());
+        while (match("||")) {
+            addNode(nodeList, parseAnd());
+        }
+        if (nodeList.isEmpty()) return null;
+        else if (nodeList.size() == 1) return nodeList.get(0);
+        return new LogFilter.OrNode(nodeList);
+    }
+
+    private LogFilter.Node parseAnd() {
+        List<LogFilter.Node> nodeList = new ArrayList<>();
+        addNode(nodeList, parseUnary());
+        while (match("&&")) {
+            addNode(nodeList, parseUnary());
+        }
+        if (nodeList.isEmpty()) return null;
+        else if (nodeList.size() == 1) return nodeList.get(0);
+        return new LogFilter.AndNode(nodeList);
+    }
+
+    private LogFilter.Node parseUnary() {
+        skipSpaces();
+        if (pos >= text.length()) return null;
+        char c = text.charAt(pos);
+        if (c == '!') {
+            pos++;
+            LogFilter.Node node = parseUnary();
+            return node != null ? new LogFilter.NotNode(node) : null;
+        } else if (c == '(') {
+            pos++;
+            LogFilter.Node node = parseOr();
+            skipSpaces();
+            if (pos < text.length() && text.charAt(pos) == ')') pos++;
+            return node;
+        }
+        return parseTerm();
+    }
+
+    /**
+     * read term up to the next operator or unmatched ")"; operators inside quotes are part of the term
+     */
+    private LogFilter.Node parseTerm() {
+        int start = pos;
+        int depth = 0;
+        boolean inQuote = false;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '"') {
+                inQuote = !inQuote;
+            } else if (!inQuote) {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    if (depth == 0) break;
+                    depth--;
+                } else if (text.startsWith("&&", pos) || text.startsWith("||", pos)) {
+                    break;
+                }
+            }
+            pos++;
+        }
+        String term = text.substring(start, pos).trim();
+        if (term.isEmpty()) return null;
+        return createTerm(term);
+    }
+
+    private LogFilter.Node createTerm(String term) {
+        int colonPos = term.indexOf(':');
+        if (colonPos < 0) {
+            // no column; any field contains text
+            return new LogFilter.ExpressionNode(LogFilter.parseExpression(null, quote(term)));
+        }
+        String key = term.substring(0, colonPos).trim();
+        String value = term.substring(colonPos + 1).trim();
+        if (key.equalsIgnoreCase("re")) {
+            return createRegex(null, value);
+        }
+        LogsTableModel.Columns column = null;
+        if (!key.isEmpty() && !key.equals("*")) {
+            try {
+                column = LogsTableModel.Columns.valueOf(key.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                // unknown column; search any field
+            }
+        }
+        if (value.startsWith("re:")) {
+            return createRegex(column, value.substring(3));
+        }
+        if (column != null && value.contains("..") && !value.startsWith("\"")) {
+            LogFilter.Node node = createRange(column, value);
+            if (node != null) return node;
+        }
+        return new LogFilter.ExpressionNode(LogFilter.parseExpression(column, value));
+    }
+
+    private LogFilter.Node createRegex(LogsTableModel.Columns column, String regex) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            // likely still being typed; match as text
+            pattern = Pattern.compile(Pattern.quote(regex));
+        }
+        return new LogFilter.RegexNode(column, pattern);
+    }
+
+    /**
+     * @return range node (ie: "100..200", "..200", "I..W", "12:00..12:30") or null if values aren't valid
+     */
+    private LogFilter.Node createRange(LogsTableModel.Columns column, String value) {
+        int sepPos = value.indexOf("..");
+        String minText = value.substring(0, sepPos).trim();
+        String maxText = value.substring(sepPos + 2).trim();
+        try {
+            switch (column) {
+                case PID, TID -> {
+                    long min = minText.isEmpty() ? Long.MIN_VALUE : Long.parseLong(minText);
+                    long max = maxText.isEmpty() ? Long.MAX_VALUE : Long.parseLong(maxText);
+                    return new LogFilter.RangeNode(column, min, max, false, value);
+                }
+                case LEVEL -> {
+                    long min = minText.isEmpty() ? Long.MIN_VALUE : LogFilter.getPriority(minText);
+                    long max = maxText.isEmpty() ? Long.MAX_VALUE : LogFilter.getPriority(maxText);
+                    if (min == 0 || max == 0) return null;
+                    return new LogFilter.RangeNode(column, min, max, false, value);
+                }
+                case DATE -> {
+                    // time of day if neither value has a date
+                    boolean isTimeOfDay = minText.length() <= 12 && maxText.length() <= 12;
+                    long min = minText.isEmpty() ? Long.MIN_VALUE : parseTime(minText, isTimeOfDay);
+                    long max = maxText.isEmpty() ? Long.MAX_VALUE : parseTime(maxText, isTimeOfDay);
+                    return new LogFilter.RangeNode(column, min, max, isTimeOfDay, value);
+                }
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            log.trace("createRange: invalid range: {}, {}", value, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @return ms since midnight (isTimeOfDay) or epoch ms
+     */
+    private static long parseTime(String value, boolean isTimeOfDay) {
+        if (isTimeOfDay) {
+            return LocalTime.parse(value, TIME_FORMAT).toNanoOfDay() / 1_000_000;
+        }
+        return LocalDateTime.parse(value, DATE_TIME_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * @return text as a "contains" value
+     */
+    private static String quote(String text) {
+        if (text.startsWith("\"") && text.endsWith("\"") && text.length() >= 2) return text;
+        return "\"" + text + "\"";
+    }
+
+    private static void addNode(List<LogFilter.Node> nodeList, LogFilter.Node node) {
+        if (node != null) nodeList.add(node);
+    }
+
+    private boolean match(String operator) {
+        skipSpaces();
+        if (text.startsWith(operator, pos)) {
+            pos += operator.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && text.charAt(pos) == ' ') pos++;
+    }
+}
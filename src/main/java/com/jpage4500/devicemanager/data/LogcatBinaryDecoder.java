@@ -0,0 +1,208 @@
+package com.jpage4500.devicemanager.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * decodes binary log entries written by 'logcat -B'
+ * <pre>
+ * struct logger_entry {
+ *     uint16_t len;       // length of the payload
+ *     uint16_t hdr_size;  // sizeof(struct logger_entry); 0 for v1 (20 byte header)
+ *     int32_t  pid;
+ *     uint32_t tid;
+ *     uint32_t sec;
+ *     uint32_t nsec;
+ *     uint32_t lid;       // v3+: log buffer id (v2: euid; same 24 byte header)
+ *     uint32_t uid;       // v4+
+ *     char     msg[0];    // priority (1 byte), tag\0, message\0
+ * };
+ * </pre>
+ * NOTE: must read the raw stream ("exec:" service); "shell:" output may have line endings converted
+ * NOTE: v2 and v3 headers are both 24 bytes; a 24 byte header's lid is only used to skip an entry if it's a valid
+ * log id and the payload doesn't look like text; any value past the last log id means the stream is v2 (euid)
+ */
+public class LogcatBinaryDecoder {
+    private static final int V1_HEADER_SIZE = 20;
+    // largest header we know about (v4) + room for future fields
+    private static final int MAX_HEADER_SIZE = 64;
+    // LOGGER_ENTRY_MAX_PAYLOAD is 4068 on most versions; allow some room
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024;
+
+    // log ids with binary (non-text) payloads
+    private static final int LOG_ID_EVENTS = 2;
+    private static final int LOG_ID_STATS = 5;
+    private static final int LOG_ID_SECURITY = 6;
+    // number of log ids (LOG_ID_MAX)
+    private static final int NUM_LOG_IDS = 8;
+    private static final int V2_V3_HEADER_SIZE = 24;
+
+    private static final int TAG_CACHE_SIZE = 2048;
+
+    private static final String[] PRIORITIES = {"?", "?", "V", "D", "I", "W", "E", "F", "S"};
+
+    private final InputStream inputStream;
+    private final ByteBuffer header = ByteBuffer.allocate(MAX_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] payload = new byte[4096];
+    private final String[] tagCache = new String[TAG_CACHE_SIZE];
+    // multi-line messages are split into 1 entry per line (same as text logcat)
+    private final ArrayDeque<LogEntry> pendingList = new ArrayDeque<>();
+    // true once a 24 byte header is known to be v2 (has euid instead of lid)
+    private boolean isV2;
+
+    public LogcatBinaryDecoder(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * @return next log entry or null at end of stream
+     * @throws IOException if stream doesn't contain binary log entries
+     */
+    public LogEntry read() throws IOException {
+        while (pendingList.isEmpty()) {
+            if (!decodeNext()) return null;
+        }
+        return pendingList.poll();
+    }
+
+    private boolean decodeNext() throws IOException {
+        // -- header --
+        if (!readFully(header.array(), 0, 4, true)) return false;
+        header.clear();
+        int len = header.getShort(0) & 0xffff;
+        int headerSize = header.getShort(2) & 0xffff;
+        if (headerSize == 0) headerSize = V1_HEADER_SIZE;
+        if (headerSize < V1_HEADER_SIZE || headerSize > MAX_HEADER_SIZE || len > MAX_PAYLOAD_SIZE) {
+            throw new IOException("invalid log header: len:" + len + ", hdr:" + headerSize);
+        }
+        readFully(header.array(), 4, headerSize - 4, false);
+        int pid = header.getInt(4);
+        int tid = header.getInt(8);
+        long sec = header.getInt(12) & 0xffffffffL;
+        long nsec = header.getInt(16) & 0xffffffffL;
+        int lid = getLogId(headerSize, header.getInt(20));
+
+        // -- payload --
+        if (payload.length < len) payload = new byte[Math.max(len, payload.length * 2)];
+        readFully(payload, 0, len, false);
+
+        boolean isBinaryLog = lid == LOG_ID_EVENTS || lid == LOG_ID_STATS || lid == LOG_ID_SECURITY;
+        if (isBinaryLog && headerSize == V2_V3_HEADER_SIZE && isText(payload, len)) {
+            // v2 euid that happens to match a binary log id
+            isBinaryLog = false;
+        }
+        if (len < 2 || isBinaryLog) {
+            // not a text entry; skip it
+            return true;
+        }
+
+        int priority = payload[0];
+        String level = priority >= 0 && priority < PRIORITIES.length ? PRIORITIES[priority] : "?";
+
+        int tagEnd = indexOf(payload, 1, len, (byte) 0);
+        String tag = getTag(payload, 1, tagEnd);
+        int msgStart = Math.min(tagEnd + 1, len);
+        int msgEnd = indexOf(payload, msgStart, len, (byte) 0);
+        // remove trailing newlines
+        while (msgEnd > msgStart && (payload[msgEnd - 1] == '\n' || payload[msgEnd - 1] == '\r')) msgEnd--;
+
+        long timestamp = sec * 1000 + nsec / 1_000_000;
+        int micros = (int) (nsec / 1000 % 1000);
+
+        // split message into lines
+        int lineStart = msgStart;
+        while (true) {
+            int lineEnd = indexOf(payload, lineStart, msgEnd, (byte) '\n');
+            LogEntry entry = new LogEntry();
+            entry.pid = pid;
+            entry.tid = tid;
+            entry.level = level;
+            entry.tag = tag;
+            entry.timestamp = timestamp;
+            entry.micros = micros;
+            entry.setMessage(new String(payload, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+            pendingList.add(entry);
+            if (lineEnd >= msgEnd) break;
+            lineStart = lineEnd + 1;
+        }
+        return true;
+    }
+
+    /**
+     * @return log buffer id or 0 (main) if header doesn't have one
+     */
+    private int getLogId(int headerSize, int value) {
+        if (headerSize < V2_V3_HEADER_SIZE) return 0;
+        if (headerSize == V2_V3_HEADER_SIZE) {
+            // v2 has euid (ie: 1000, 10123) where v3 has lid
+            if (value < 0 || value >= NUM_LOG_IDS) isV2 = true;
+            if (isV2) return 0;
+        }
+        return value;
+    }
+
+    /**
+     * @return true if payload is a text entry: priority, tag\0, message
+     */
+    private static boolean isText(byte[] data, int len) {
+        if (len < 3 || data[0] < 2 || data[0] > 8) return false;
+        int tagEnd = indexOf(data, 1, len, (byte) 0);
+        if (tagEnd == len) return false;
+        for (int i = 1; i < tagEnd; i++) {
+            if (data[i] < ' ') return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return shared String for tag at data[start..end)
+     */
+    private String getTag(byte[] data, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + data[i];
+        int index = (hash ^ (hash >>> 16)) & (TAG_CACHE_SIZE - 1);
+        String cached = tagCache[index];
+        if (cached != null && matches(cached, data, start, end)) return cached;
+        String tag = new String(data, start, end - start, StandardCharsets.UTF_8);
+        tagCache[index] = tag;
+        return tag;
+    }
+
+    private static boolean matches(String value, byte[] data, int start, int end) {
+        int length = end - start;
+        if (value.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            // non-ASCII tags won't match and are decoded again; rare
+            if (value.charAt(i) != data[start + i]) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == value) return i;
+        }
+        return end;
+    }
+
+    /**
+     * @param allowEof true to return false if stream ends before any data is read
+     */
+    private boolean readFully(byte[] data, int offset, int length, boolean allowEof) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int n = inputStream.read(data, offset + total, length - total);
+            if (n == -1) {
+                if (allowEof && total == 0) return false;
+                throw new EOFException("log stream ended mid-entry");
+            }
+            total += n;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package com.jpage4500.devicemanager.data;
+
+import com.jpage4500.devicemanager.table.LogsTableModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * translates filters into logcat arguments so lines are filtered on the device before they're sent
+ * - only conditions that every matching line must meet are used (level, pid, message regex); the rest are ignored
+ * - filters are still checked on the host, so device args only need to match the same lines or more
+ * <pre>
+ * level:W+                  -> *:W
+ * pid:1234                  -> --pid=1234
+ * msg:re:timeout \d+        -> -e "timeout \d+"
+ * </pre>
+ * NOTE: tags aren't passed to logcat; its filterspec is case-sensitive while tag filters on the host aren't
+ */
+public class LogcatFilterSpec {
+    private static final String LEVELS = "??VDIWEF";
+    // regex syntax that means the same thing to Java and logcat (ECMAScript)
+    // NOTE: no anchors; logcat applies -e to the whole (multi-line) message
+    private static final Pattern PORTABLE_REGEX = Pattern.compile("([\\w \\-:=/,.*+?|()\\[\\]]|\\\\[dswDSW.\\\\()\\[\\]])*");
+
+    // min priority (V=2 .. F=7) or 0
+    private int minPriority;
+    private Integer pid;
+    private String regex;
+
+    /**
+     * @return logcat arguments for filters; empty if nothing can be filtered on the device
+     */
+    public static List<String> getArgs(LogFilter... filters) {
+        LogcatFilterSpec spec = new LogcatFilterSpec();
+        if (filters != null) {
+            for (LogFilter filter : filters) {
+                if (filter == null) continue;
+                LogFilter.Node root = filter.getRoot();
+                if (root != null) spec.add(root);
+            }
+        }
+        return spec.toArgs();
+    }
+
+    /**
+     * add conditions from node that every matching line must meet
+     */
+    private void add(LogFilter.Node node) {
+        if (node instanceof LogFilter.AndNode andNode) {
+            for (LogFilter.Node child : andNode.childList) add(child);
+        } else if (node instanceof LogFilter.ExpressionNode expressionNode) {
+            addExpression(expressionNode.expression);
+        } else if (node instanceof LogFilter.RangeNode rangeNode) {
+            if (rangeNode.column == LogsTableModel.Columns.LEVEL && rangeNode.min > 0) {
+                minPriority = Math.max(minPriority, (int) Math.min(rangeNode.min, 7));
+            } else if (rangeNode.column == LogsTableModel.Columns.PID && rangeNode.min == rangeNode.max) {
+                if (pid == null) pid = (int) rangeNode.min;
+            }
+        } else if (node instanceof LogFilter.RegexNode regexNode) {
+            String pattern = regexNode.pattern.pattern();
+            if (regexNode.column == LogsTableModel.Columns.MSG && regex == null
+                    && regexNode.pattern.flags() == 0 && PORTABLE_REGEX.matcher(pattern).matches()) {
+                regex = pattern;
+            }
+        }
+        // NOT, OR and any other columns can't be filtered on device
+    }
+
+    private void addExpression(LogFilter.FilterExpression expr) {
+        if (expr.isNotExpression || expr.value == null || expr.column == null) return;
+        switch (expr.column) {
+            case LEVEL -> {
+                // "level:W" (only W) or "level:W+" (W or higher)
+                int priority = expr.value.length() == 1 ? LogFilter.getPriority(expr.value) : 0;
+                boolean isLevel = expr.expression == LogFilter.Expression.EQUALS || expr.expression == LogFilter.Expression.STARTS_WITH;
+                if (isLevel && priority > 0) minPriority = Math.max(minPriority, priority);
+            }
+            case PID -> {
+                if (expr.expression != LogFilter.Expression.EQUALS || pid != null) return;
+                try {
+                    pid = Integer.parseInt(expr.value.trim());
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+    }
+
+    private List<String> toArgs() {
+        List<String> argList = new ArrayList<>();
+        if (pid != null) argList.add("--pid=" + pid);
+        if (regex != null) {
+            argList.add("-e");
+            argList.add(regex);
+        }
+        if (minPriority > 2) argList.add("*:" + LEVELS.charAt(minPriority));
+        return argList;
+    }
+}
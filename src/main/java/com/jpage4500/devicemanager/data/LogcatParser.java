@@ -0,0 +1,165 @@
+package com.jpage4500.devicemanager.data;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * single-pass parser for 'logcat -v threadtime' lines
+ * - timestamp is computed from a cached start-of-hour time instead of parsing a date string
+ * - pid/tid are parsed as ints
+ * - level and tag Strings are shared between entries
+ * - message isn't copied until it's needed
+ * <p>
+ * NOTE: not thread safe; use 1 parser per log stream
+ */
+public class LogcatParser {
+    // max number of cached tags (power of 2)
+    private static final int TAG_CACHE_SIZE = 2048;
+
+    private static final String[] LEVELS = new String[128];
+
+    static {
+        for (char c : "VDIWEFAS".toCharArray()) {
+            LEVELS[c] = String.valueOf(c);
+        }
+    }
+
+    private final int year;
+    private final ZoneId zoneId;
+
+    // start of the last seen hour (month/day/hour) in epoch ms
+    private int lastHourKey = -1;
+    private long lastHourMs;
+
+    private final String[] tagCache = new String[TAG_CACHE_SIZE];
+
+    public LogcatParser(int year) {
+        this.year = year;
+        this.zoneId = ZoneId.systemDefault();
+    }
+
+    /**
+     * 10-16 11:34:17.824  2063  2063 D PluginAODManager: onNotificationInfoUpdated() 0|com.test.pm|2000|null|10400
+     * 10-16 11:34:17.825  2063  2063 I AODNotificationManager: updateVisibleNotifications: 4
+     * 10-16 11:34:17.858  2063  2063 D QS      : setQSExpansion 0.0 -588.0
+     * 10-16 11:34:18.310  1142  1853 D SemNscXgbMsL1: Probability - Non real time: [0.79989874]
+     * 05-13 15:20:12.334  1195  1195 W adbd    : timeout expired while flushing socket, closing
+     * 05-13 15:20:12.876  3192  4081 D ModemODPMPoller: Current Modem ODPM (mw): 69, threshold: 800
+     *
+     * @return parsed entry or null if line isn't in threadtime format (ie: "--------- beginning of main")
+     */
+    public LogEntry parse(String line) {
+        int len = line.length();
+        // "MM-dd HH:mm:ss.S" + pid + tid + level
+        if (len < 24) return null;
+        if (line.charAt(2) != '-' || line.charAt(5) != ' ' || line.charAt(8) != ':' || line.charAt(11) != ':' || line.charAt(14) != '.') {
+            return null;
+        }
+        int month = digits2(line, 0);
+        int day = digits2(line, 3);
+        int hour = digits2(line, 6);
+        int minute = digits2(line, 9);
+        int second = digits2(line, 12);
+        if ((month | day | hour | minute | second) < 0) return null;
+
+        // fraction can be ms (default) or us (-v usec)
+        int pos = 15;
+        int micros = 0;
+        int numDigits = 0;
+        while (pos < len) {
+            char c = line.charAt(pos);
+            if (c < '0' || c > '9') break;
+            if (numDigits < 6) micros = micros * 10 + (c - '0');
+            numDigits++;
+            pos++;
+        }
+        if (numDigits == 0) return null;
+        for (int i = numDigits; i < 6; i++) micros *= 10;
+        int millis = micros / 1000;
+
+        LogEntry entry = new LogEntry();
+        entry.timestamp = getHourMs(month, day, hour) + (minute * 60L + second) * 1000L + millis;
+        entry.micros = micros % 1000;
+
+        // -- pid --
+        pos = skipSpaces(line, pos);
+        int start = pos;
+        int pid = 0;
+        for (char c; pos < len && (c = line.charAt(pos)) >= '0' && c <= '9'; pos++) pid = pid * 10 + (c - '0');
+        if (pos == start) return null;
+        entry.pid = pid;
+
+        // -- tid --
+        pos = skipSpaces(line, pos);
+        start = pos;
+        int tid = 0;
+        for (char c; pos < len && (c = line.charAt(pos)) >= '0' && c <= '9'; pos++) tid = tid * 10 + (c - '0');
+        if (pos == start) return null;
+        entry.tid = tid;
+
+        // -- level --
+        pos = skipSpaces(line, pos);
+        if (pos >= len) return null;
+        char levelChar = line.charAt(pos);
+        entry.level = levelChar < LEVELS.length && LEVELS[levelChar] != null ? LEVELS[levelChar] : String.valueOf(levelChar);
+        pos = skipSpaces(line, pos + 1);
+
+        // -- tag --
+        int colonPos = line.indexOf(':', pos);
+        if (colonPos > pos) {
+            int tagEnd = colonPos;
+            while (tagEnd > pos && line.charAt(tagEnd - 1) == ' ') tagEnd--;
+            entry.tag = getTag(line, pos, tagEnd);
+            pos = skipSpaces(line, colonPos + 1);
+        }
+        entry.setMessage(line, pos);
+        return entry;
+    }
+
+    /**
+     * @return epoch ms at the start of the given hour; cached since logs arrive in order
+     */
+    private long getHourMs(int month, int day, int hour) {
+        int key = (month * 32 + day) * 24 + hour;
+        if (key != lastHourKey) {
+            try {
+                lastHourMs = LocalDateTime.of(year, month, day, hour, 0).atZone(zoneId).toInstant().toEpochMilli();
+            } catch (Exception e) {
+                // invalid date (ie: Feb 29 on non-leap year)
+                lastHourMs = 0;
+            }
+            lastHourKey = key;
+        }
+        return lastHourMs;
+    }
+
+    /**
+     * @return shared String for tag at line[start..end)
+     */
+    private String getTag(String line, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) hash = 31 * hash + line.charAt(i);
+        int index = (hash ^ (hash >>> 16)) & (TAG_CACHE_SIZE - 1);
+        String cached = tagCache[index];
+        int length = end - start;
+        if (cached != null && cached.length() == length && line.regionMatches(start, cached, 0, length)) {
+            return cached;
+        }
+        String tag = line.substring(start, end);
+        tagCache[index] = tag;
+        return tag;
+    }
+
+    private static int digits2(String line, int pos) {
+        int d1 = line.charAt(pos) - '0';
+        int d2 = line.charAt(pos + 1) - '0';
+        if (d1 < 0 || d1 > 9 || d2 < 0 || d2 > 9) return -1;
+        return d1 * 10 + d2;
+    }
+
+    private static int skipSpaces(String line, int pos) {
+        int len = line.length();
+        while (pos < len && line.charAt(pos) == ' ') pos++;
+        return pos;
+    }
+}
@@ -1,6 +1,7 @@
 package com.jpage4500.devicemanager.manager;
 
 import com.jpage4500.devicemanager.data.Device;
+import com.jpage4500.devicemanager.data.DeviceChange;
 import com.jpage4500.devicemanager.data.DeviceFile;
 import com.jpage4500.devicemanager.data.LogEntry;
 import com.jpage4500.devicemanager.ui.dialog.ConnectDialog;
@@ -8,6 +9,7 @@ import com.jpage4500.devicemanager.ui.dialog.SettingsDialog;
 import com.jpage4500.devicemanager.utils.*;
 import com.jpage4500.devicemanager.utils.Timer;
 import se.vidstige.jadb.*;
+import se.vidstige.jadb.managers.Bash;
 import se.vidstige.jadb.managers.PackageManager;
 import se.vidstige.jadb.managers.PropertyManager;
 
@@ -28,6 +30,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 public class DeviceManager {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(DeviceManager.class);
@@ -40,6 +43,7 @@ public class DeviceManager {
     public static final String COMMAND_REBOOT = "reboot";
     public static final String COMMAND_DISK_SIZE = "df";
     public static final String COMMAND_LIST_PROCESSES = "ps -A -o PID,ARGS"; // | grep u0_
+    public static final String COMMAND_LIST_PIDS = "ps -o PID,ARGS -p ";
     public static final String COMMAND_DUMPSYS_BATTERY = "dumpsys battery";
 
     // scripts that app will run
@@ -49,21 +53,58 @@ public class DeviceManager {
 
     public static final String FILE_CUSTOM_PROP = "/sdcard/android_device_manager.properties";
 
+    // section names used when fetching device details with a single shell script
+    private static final String SECTION_MARKER = "#ADM#";
+    private static final String SECTION_NICKNAME = "nickname";
+    private static final String SECTION_PHONE1 = "phone1";
+    private static final String SECTION_PHONE2 = "phone2";
+    private static final String SECTION_IMEI = "imei";
+    private static final String SECTION_PROPS = "props";
+    private static final String SECTION_CUSTOM_PROPS = "custom";
+    private static final String SECTION_DISK = "disk";
+    private static final String SECTION_BATTERY = "battery";
+    private static final String SECTION_APP = "app:";
+
     public static final String ERR_ROOT_NOT_AVAILABLE = "root not available";
     public static final String ERR_PERMISSION_DENIED = "permission denied";
     public static final String ERR_NOT_A_DIRECTORY = "Not a directory";
 
+    // number of sockets to keep connected to adb server ahead of time
+    private static final int TRANSPORT_POOL_SIZE = 5;
+    private static final long TRANSPORT_POOL_IDLE_MS = TimeUnit.MINUTES.toMillis(2);
+
+    // default parallelism and per-device timeout when running a command on multiple devices
+    public static final int DEFAULT_MULTI_DEVICE_CONCURRENCY = 32;
+    public static final long DEFAULT_MULTI_DEVICE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(2);
+
     private static volatile DeviceManager instance;
 
-    private final List<Device> deviceList;
+    // all known devices (online or not) keyed by serial
+    private final ConcurrentHashMap<String, Device> deviceMap;
     private final String tempFolder;
     private final List<Process> processList;
 
     private final ExecutorService commandExecutorService;
+    // unbounded pool for multi-device commands; parallelism is limited per task
+    private final ExecutorService multiDeviceExecutorService;
     private final ScheduledExecutorService scheduledExecutorService;
-    private ScheduledFuture<?> deviceRefreshRuture;
+    private volatile DeviceRefreshScheduler refreshScheduler;
+    private volatile Collection<String> visibleSerialList = List.of();
+    private ScheduledFuture<?> statsFuture;
+    // number of shell commands sent to devices
+    private final RateCounter shellCommandCounter = new RateCounter();
 
-    private final AtomicBoolean isLogging = new AtomicBoolean(false);
+    // commands running on multiple devices; used to cancel them
+    private final Set<MultiDeviceTask> runningTaskSet = ConcurrentHashMap.newKeySet();
+
+    // (serial, listener) -> logcat session
+    private final Map<LogSessionKey, LogSession> logSessionMap = new ConcurrentHashMap<>();
+
+    /**
+     * a device can be logged by more than 1 window at a time (ie: its own and a merged one); each gets its own session
+     */
+    private record LogSessionKey(String serial, DeviceLogListener listener) {
+    }
 
     private JadbConnection connection;
 
@@ -79,10 +120,11 @@ public class DeviceManager {
     }
 
     private DeviceManager() {
-        deviceList = new ArrayList<>();
+        deviceMap = new ConcurrentHashMap<>();
         processList = new ArrayList<>();
 
         commandExecutorService = Executors.newFixedThreadPool(10);
+        multiDeviceExecutorService = Executors.newCachedThreadPool();
         scheduledExecutorService = Executors.newScheduledThreadPool(3);
 
         tempFolder = System.getProperty("java.io.tmpdir");
@@ -90,17 +132,16 @@ public class DeviceManager {
     }
 
     public interface DeviceListener {
-        // device list was refreshed
-        void handleDevicesUpdated(List<Device> deviceList);
-
-        // single device was updated
-        void handleDeviceUpdated(Device device);
+        // one or more devices were added, removed or changed
+        void handleDeviceChanges(List<DeviceChange> changeList);
 
         void handleException(Exception e);
     }
 
     public void connectAdbServer(boolean allowRetry, DeviceManager.DeviceListener listener) {
+        if (connection != null) connection.disableTransportPool();
         connection = new JadbConnection();
+        connection.enableTransportPool(TRANSPORT_POOL_SIZE, TRANSPORT_POOL_IDLE_MS);
         commandExecutorService.submit(() -> {
             try {
                 String hostVersion = connection.getHostVersion();
@@ -135,97 +176,102 @@ public class DeviceManager {
     private void handleDeviceUpdate(List<JadbDevice> devices, DeviceListener listener) {
         //log.debug("onDetect: GOT:{}, {}", devices.size(), GsonHelper.toJson(devices));
         List<Device> addedDeviceList = new ArrayList<>();
+        List<DeviceChange> changeList = new ArrayList<>();
 
         // 1) look for devices that don't exist today
+        Set<String> serialSet = new HashSet<>();
         for (JadbDevice jadbDevice : devices) {
             String serial = jadbDevice.getSerial();
+            serialSet.add(serial);
             // -- does this device already exist? --
-            Device device = getDevice(serial);
-            if (device == null || !device.isOnline) {
+            Device device = deviceMap.computeIfAbsent(serial, key -> {
                 // -- ADD DEVICE --
-                if (device == null) {
-                    device = new Device();
-                    log.trace("handleDeviceUpdate: DEVICE_ADDED: {}", serial);
-                    synchronized (deviceList) {
-                        deviceList.add(device);
-                    }
-                }
-                device.serial = serial;
+                log.trace("handleDeviceUpdate: DEVICE_ADDED: {}", key);
+                Device newDevice = new Device();
+                newDevice.serial = key;
+                return newDevice;
+            });
+            if (!device.isOnline) {
                 device.jadbDevice = jadbDevice;
                 addedDeviceList.add(device);
             }
         }
 
         // 2) look for devices that are now offline
-        for (Device device : deviceList) {
-            boolean isFound = false;
-            for (JadbDevice jadbDevice : devices) {
-                if (device.serial.equals(jadbDevice.getSerial())) {
-                    isFound = true;
-                    break;
-                }
-            }
-            if (!isFound) {
+        for (Device device : deviceMap.values()) {
+            if (!serialSet.contains(device.serial) && device.isOnline) {
                 // -- DEVICE REMOVED --
                 device.isOnline = false;
                 device.lastUpdateMs = System.currentTimeMillis();
                 if (log.isTraceEnabled()) log.trace("handleDeviceUpdate: DEVICE_OFFLINE: {}", device.getDisplayName());
-                listener.handleDeviceUpdated(device);
+                changeList.add(DeviceChange.removed(device));
+                if (refreshScheduler != null) refreshScheduler.removeDevice(device);
             }
         }
 
-        if (!addedDeviceList.isEmpty()) {
-            // notify listener that device list changed
-            listener.handleDevicesUpdated(deviceList);
-
-            for (Device addedDevice : addedDeviceList) {
-                // fetch more details for these devices
-                try {
-                    JadbDevice.State state = addedDevice.jadbDevice.getState();
-                    if (state == JadbDevice.State.Device) {
-                        log.trace("handleDeviceUpdate: ONLINE: {}", addedDevice.serial);
-                        addedDevice.isOnline = true;
-                        addedDevice.lastUpdateMs = System.currentTimeMillis();
-                        listener.handleDeviceUpdated(addedDevice);
-                        fetchDeviceDetails(addedDevice, true, listener);
-                    } else {
-                        log.debug("handleDeviceUpdate: NOT_READY: {} -> {}", addedDevice.serial, state);
-                        addedDevice.status = state.name();
-                        listener.handleDeviceUpdated(addedDevice);
-                    }
-                } catch (Exception e) {
-                    String errMsg = e.getMessage();
-                    //  command failed: device offline
-                    //  command failed: device still authorizing
-                    //  command failed: device unauthorized.
-                    //  This adb server's $ADB_VENDOR_KEYS is not set
-                    //  Try 'adb kill-server' if that seems wrong.
-                    //  Otherwise check for a confirmation dialog on your device.
-                    log.debug("handleDeviceUpdate: NOT_READY_EXCEPTION: {} -> {}", addedDevice.serial, errMsg);
-                    addedDevice.status = errMsg;
-                    // TODO: check error message before setting device to offline?
-                    addedDevice.isOnline = false;
-                    listener.handleDeviceUpdated(addedDevice);
+        for (Device addedDevice : addedDeviceList) {
+            // check if device is ready
+            try {
+                JadbDevice.State state = addedDevice.jadbDevice.getState();
+                if (state == JadbDevice.State.Device) {
+                    log.trace("handleDeviceUpdate: ONLINE: {}", addedDevice.serial);
+                    addedDevice.isOnline = true;
+                    addedDevice.lastUpdateMs = System.currentTimeMillis();
+                } else {
+                    log.debug("handleDeviceUpdate: NOT_READY: {} -> {}", addedDevice.serial, state);
+                    addedDevice.status = state.name();
                 }
+            } catch (Exception e) {
+                String errMsg = e.getMessage();
+                //  command failed: device offline
+                //  command failed: device still authorizing
+                //  command failed: device unauthorized.
+                //  This adb server's $ADB_VENDOR_KEYS is not set
+                //  Try 'adb kill-server' if that seems wrong.
+                //  Otherwise check for a confirmation dialog on your device.
+                log.debug("handleDeviceUpdate: NOT_READY_EXCEPTION: {} -> {}", addedDevice.serial, errMsg);
+                addedDevice.status = errMsg;
+                // TODO: check error message before setting device to offline?
+                addedDevice.isOnline = false;
             }
+            changeList.add(DeviceChange.added(addedDevice));
+        }
 
-            // run periodic task to update device state
-            if (deviceRefreshRuture == null) {
-                deviceRefreshRuture = scheduledExecutorService.scheduleWithFixedDelay(() -> {
-                    //log.trace("handleDeviceUpdate: REFRESH");
-                    for (Device device : deviceList) {
-                        fetchDeviceDetails(device, false, listener);
-                    }
-                }, 5, 5, TimeUnit.MINUTES);
-            }
+        // notify listener of all changes at once
+        if (!changeList.isEmpty()) listener.handleDeviceChanges(changeList);
+
+        for (Device addedDevice : addedDeviceList) {
+            // fetch more details for these devices
+            if (addedDevice.isOnline) fetchDeviceDetails(addedDevice, true, listener);
+        }
+
+        if (!addedDeviceList.isEmpty() && refreshScheduler == null) {
+            // periodic refresh of battery, disk space and app versions
+            refreshScheduler = new DeviceRefreshScheduler(scheduledExecutorService, deviceMap::values,
+                    (device, fieldSet, refreshListener) -> fetchDeviceDetails(device, false, fieldSet, listener, refreshListener));
+            refreshScheduler.setVisibleDevices(visibleSerialList);
+            refreshScheduler.start();
+            statsFuture = scheduledExecutorService.scheduleWithFixedDelay(this::logStats, 1, 1, TimeUnit.MINUTES);
         }
     }
 
+    /**
+     * set devices currently visible in the device table; these are refreshed first and more often
+     */
+    public void setVisibleDevices(Collection<String> serialList) {
+        visibleSerialList = serialList;
+        DeviceRefreshScheduler scheduler = refreshScheduler;
+        if (scheduler != null) scheduler.setVisibleDevices(serialList);
+    }
+
+    private void logStats() {
+        TransportPool pool = connection != null ? connection.getTransportPool() : null;
+        log.debug("logStats: commands:{}, refresh:{}, pool:{}", shellCommandCounter, refreshScheduler, pool);
+    }
+
     public void refreshDevices(DeviceListener listener) {
-        synchronized (deviceList) {
-            for (Device device : deviceList) {
-                fetchDeviceDetails(device, true, listener);
-            }
+        for (Device device : deviceMap.values()) {
+            fetchDeviceDetails(device, true, listener);
         }
     }
 
@@ -235,63 +281,204 @@ public class DeviceManager {
      * @param fullRefresh - true to fetch everythign; false to only fetch values that would change often (battery, disk)
      */
     private void fetchDeviceDetails(Device device, boolean fullRefresh, DeviceListener listener) {
-        if (!device.isOnline) return;
+        fetchDeviceDetails(device, fullRefresh, DeviceRefreshScheduler.TELEMETRY_FIELDS, listener, null);
+    }
+
+    /**
+     * @param telemetrySet    which of the often-changing values (battery, disk, app versions) to fetch
+     * @param refreshListener optional; always called once with the fields that changed
+     */
+    private void fetchDeviceDetails(Device device, boolean fullRefresh, Set<DeviceChange.Field> telemetrySet,
+                                    DeviceListener listener, DeviceRefreshScheduler.RefreshListener refreshListener) {
+        if (!device.isOnline) {
+            if (refreshListener != null) refreshListener.onRefreshed(Collections.emptySet());
+            return;
+        }
         commandExecutorService.submit(() -> {
             Timer timer = new Timer();
-            // show device as 'busy'
-            device.busyCounter.incrementAndGet();
-            listener.handleDeviceUpdated(device);
-            if (fullRefresh) {
-                // -- device nickname --
-                fetchNickname(device);
-
-                // -- phone number --
-                String phone = runShellServiceCall(device, COMMAND_SERVICE_PHONE1);
-                if (TextUtils.notEmpty(phone)) device.phone = phone;
-                if (TextUtils.isEmpty(device.phone)) {
-                    // alternative way of getting phone number
-                    device.phone = runShellServiceCall(device, COMMAND_SERVICE_PHONE2);
+            EnumSet<DeviceChange.Field> fieldSet = EnumSet.noneOf(DeviceChange.Field.class);
+            try {
+                // show device as 'busy'
+                device.busyCounter.incrementAndGet();
+                notifyDeviceChange(listener, DeviceChange.changed(device, DeviceChange.Field.BUSY));
+                DeviceChange.Snapshot snapshot = new DeviceChange.Snapshot(device);
+
+                // run everything as 1 shell script; fall back to individual commands if that fails
+                if (!fetchDeviceDetailsBatched(device, fullRefresh, telemetrySet)) {
+                    fetchDeviceDetailsIndividually(device, fullRefresh, telemetrySet);
                 }
 
-                // -- IMEI --
-                String imei = runShellServiceCall(device, COMMAND_SERVICE_IMEI);
-                if (TextUtils.notEmpty(imei)) device.imei = imei;
+                device.lastUpdateMs = System.currentTimeMillis();
 
-                // -- device properties (model, OS) --
-                try {
-                    device.propMap = new PropertyManager(device.jadbDevice).getprop();
-                } catch (Exception e) {
-                    log.error("fetchDeviceDetails: PROP Exception:{}", e.getMessage());
+                if (fullRefresh) {
+                    if (log.isTraceEnabled()) log.trace("fetchDeviceDetails: {}: full:{}, {}", timer, fullRefresh, GsonHelper.toJson(device));
+                    // keep track of wireless devices
+                    ConnectDialog.addWirelessDevice(device);
+                    // values were just fetched; start periodic refresh intervals over
+                    DeviceRefreshScheduler scheduler = refreshScheduler;
+                    if (scheduler != null) scheduler.resetDevice(device);
+                }
+                fieldSet.addAll(snapshot.diff(device));
+            } finally {
+                int busyCount = device.busyCounter.decrementAndGet();
+                if (refreshListener != null) refreshListener.onRefreshed(fieldSet);
+                if (busyCount == 0) fieldSet.add(DeviceChange.Field.BUSY);
+                if (!fieldSet.isEmpty()) {
+                    notifyDeviceChange(listener, new DeviceChange(DeviceChange.Type.CHANGED, device, fieldSet));
                 }
+            }
+        });
+    }
+
+    private void notifyDeviceChange(DeviceListener listener, DeviceChange change) {
+        listener.handleDeviceChanges(List.of(change));
+    }
 
-                // -- custom properties --
-                fetchCustomProperties(device);
+    /**
+     * fetch device details using a separate shell command for each value
+     */
+    private void fetchDeviceDetailsIndividually(Device device, boolean fullRefresh, Set<DeviceChange.Field> telemetrySet) {
+        if (fullRefresh) {
+            // -- device nickname --
+            ShellResult nicknameResult = runShell(device, COMMAND_DEVICE_NICKNAME);
+            if (nicknameResult.isSuccess) parseNickname(device, nicknameResult.resultList);
+
+            // -- phone number --
+            String phone = runShellServiceCall(device, COMMAND_SERVICE_PHONE1);
+            if (TextUtils.notEmpty(phone)) device.phone = phone;
+            if (TextUtils.isEmpty(device.phone)) {
+                // alternative way of getting phone number
+                device.phone = runShellServiceCall(device, COMMAND_SERVICE_PHONE2);
             }
 
-            // -- disk free space --
-            fetchFreeDiskSpace(device);
+            // -- IMEI --
+            String imei = runShellServiceCall(device, COMMAND_SERVICE_IMEI);
+            if (TextUtils.notEmpty(imei)) device.imei = imei;
+
+            // -- device properties (model, OS) --
+            try {
+                device.propMap = new PropertyManager(device.jadbDevice).getprop();
+            } catch (Exception e) {
+                log.error("fetchDeviceDetails: PROP Exception:{}", e.getMessage());
+            }
+
+            // -- custom properties --
+            fetchCustomProperties(device);
+        }
 
-            // -- version of installed apps --
+        // -- disk free space --
+        if (telemetrySet.contains(DeviceChange.Field.FREE_SPACE)) {
+            ShellResult diskResult = runShell(device, COMMAND_DISK_SIZE);
+            if (diskResult.isSuccess) parseFreeDiskSpace(device, diskResult.resultList);
+        }
+
+        // -- version of installed apps --
+        if (telemetrySet.contains(DeviceChange.Field.APP_VERSIONS)) {
             fetchInstalledAppVersions(device);
+        }
+
+        // -- battery level, charging status, etc --
+        if (telemetrySet.contains(DeviceChange.Field.BATTERY)) {
+            ShellResult batteryResult = runShell(device, COMMAND_DUMPSYS_BATTERY);
+            parseBatteryInfo(device, batteryResult.resultList);
+        }
+    }
+
+    /**
+     * fetch device details by running all commands as 1 shell script over a single connection; output of each
+     * command is separated by a section marker
+     *
+     * @return false if script couldn't be run
+     */
+    private boolean fetchDeviceDetailsBatched(Device device, boolean fullRefresh, Set<DeviceChange.Field> telemetrySet) {
+        Map<String, String> commandMap = new LinkedHashMap<>();
+        if (fullRefresh) {
+            commandMap.put(SECTION_NICKNAME, COMMAND_DEVICE_NICKNAME);
+            commandMap.put(SECTION_PHONE1, COMMAND_SERVICE_PHONE1);
+            commandMap.put(SECTION_PHONE2, COMMAND_SERVICE_PHONE2);
+            commandMap.put(SECTION_IMEI, COMMAND_SERVICE_IMEI);
+            commandMap.put(SECTION_PROPS, "getprop");
+            commandMap.put(SECTION_CUSTOM_PROPS, "cat " + FILE_CUSTOM_PROP);
+        }
+        boolean fetchDisk = telemetrySet.contains(DeviceChange.Field.FREE_SPACE);
+        boolean fetchBattery = telemetrySet.contains(DeviceChange.Field.BATTERY);
+        List<String> customApps = telemetrySet.contains(DeviceChange.Field.APP_VERSIONS) ? SettingsDialog.getCustomApps() : List.of();
+        if (fetchDisk) commandMap.put(SECTION_DISK, COMMAND_DISK_SIZE);
+        if (fetchBattery) commandMap.put(SECTION_BATTERY, COMMAND_DUMPSYS_BATTERY);
+        for (String customApp : customApps) {
+            // NOTE: app names come from settings; quoted so they can't break (or add commands to) the script
+            commandMap.put(SECTION_APP + customApp, "dumpsys package " + Bash.quote(customApp) + " | grep versionName=");
+        }
+        // nothing to do (ie: only app versions were due but no apps are configured)
+        if (commandMap.isEmpty()) return true;
+
+        Map<String, List<String>> sectionMap = runShellSections(device, commandMap);
+        if (sectionMap == null) return false;
+
+        if (fullRefresh) {
+            parseNickname(device, sectionMap.get(SECTION_NICKNAME));
+
+            String phone = parseServiceCall(sectionMap.get(SECTION_PHONE1));
+            if (TextUtils.isEmpty(phone)) phone = parseServiceCall(sectionMap.get(SECTION_PHONE2));
+            if (TextUtils.notEmpty(phone)) device.phone = phone;
+
+            String imei = parseServiceCall(sectionMap.get(SECTION_IMEI));
+            if (TextUtils.notEmpty(imei)) device.imei = imei;
 
-            // -- battery level, charging status, etc --
-            fetchBatteryInfo(device);
+            Map<String, String> propMap = PropertyManager.parseProp(sectionMap.get(SECTION_PROPS));
+            if (!propMap.isEmpty()) device.propMap = propMap;
+
+            parseCustomProperties(device, TextUtils.join(sectionMap.get(SECTION_CUSTOM_PROPS), "\n"));
+        }
+
+        if (fetchDisk) parseFreeDiskSpace(device, sectionMap.get(SECTION_DISK));
+        if (fetchBattery) parseBatteryInfo(device, sectionMap.get(SECTION_BATTERY));
+
+        for (String customApp : customApps) {
+            String versionName = parseAppVersion(sectionMap.get(SECTION_APP + customApp));
+            if (device.customAppVersionList == null) device.customAppVersionList = new HashMap<>();
+            device.customAppVersionList.put(customApp, versionName);
+        }
+        return true;
+    }
 
-            device.lastUpdateMs = System.currentTimeMillis();
+    /**
+     * run multiple commands in a single shell and split output by command
+     *
+     * @param commandMap map of section name -> command
+     * @return map of section name -> output lines (stdout + stderr); null on failure
+     */
+    private Map<String, List<String>> runShellSections(Device device, Map<String, String> commandMap) {
+        StringBuilder script = new StringBuilder();
+        for (Map.Entry<String, String> entry : commandMap.entrySet()) {
+            if (!script.isEmpty()) script.append("; ");
+            script.append("echo ").append(Bash.quote(SECTION_MARKER + entry.getKey())).append("; ");
+            script.append(entry.getValue()).append(" 2>&1");
+        }
+        ShellResult result = runShellScript(device, script.toString());
+        if (!result.isSuccess) return null;
 
-            if (fullRefresh) {
-                if (log.isTraceEnabled()) log.trace("fetchDeviceDetails: {}: full:{}, {}", timer, fullRefresh, GsonHelper.toJson(device));
-                // keep track of wireless devices
-                ConnectDialog.addWirelessDevice(device);
+        Map<String, List<String>> sectionMap = new HashMap<>();
+        List<String> sectionLines = null;
+        for (String line : result.resultList) {
+            if (line.startsWith(SECTION_MARKER)) {
+                sectionLines = new ArrayList<>();
+                sectionMap.put(line.substring(SECTION_MARKER.length()), sectionLines);
+            } else if (sectionLines != null) {
+                sectionLines.add(line);
             }
-            int busyCount = device.busyCounter.decrementAndGet();
-            if (busyCount == 0) listener.handleDeviceUpdated(device);
-        });
+        }
+        // script didn't run as expected (no sections found)
+        if (sectionMap.isEmpty()) {
+            log.debug("runShellSections: {}, no sections: {}", device.serial, GsonHelper.toJson(result.resultList));
+            return null;
+        }
+        return sectionMap;
     }
 
-    private void fetchBatteryInfo(Device device) {
-        ShellResult result = runShell(device, COMMAND_DUMPSYS_BATTERY);
-        for (String batteryLine : result.resultList) {
+    private void parseBatteryInfo(Device device, List<String> lineList) {
+        if (lineList == null) return;
+        for (String batteryLine : lineList) {
             String[] batteryArr = batteryLine.split(": ", 2);
             if (batteryArr.length < 2) continue;
             String name = batteryArr[0].trim();
@@ -337,20 +524,18 @@ public class DeviceManager {
         }
     }
 
-    private void fetchFreeDiskSpace(Device device) {
-        ShellResult result = runShell(device, COMMAND_DISK_SIZE);
-        if (result.isSuccess && !result.resultList.isEmpty()) {
-            // only interested in last line
-            String last = result.resultList.get(result.resultList.size() - 1);
-            // /dev/fuse         115249236 14681484 100436680  13% /storage/emulated
-            //                                      ^^^^^^^^^
-            String size = TextUtils.split(last, 3);
-            try {
-                // size is in 1k blocks
-                device.freeSpace = Long.parseLong(size) * 1000L;
-            } catch (Exception e) {
-                log.trace("fetchDeviceDetails: FREE_SPACE Exception:{}", e.getMessage());
-            }
+    private void parseFreeDiskSpace(Device device, List<String> lineList) {
+        if (lineList == null || lineList.isEmpty()) return;
+        // only interested in last line
+        String last = lineList.get(lineList.size() - 1);
+        // /dev/fuse         115249236 14681484 100436680  13% /storage/emulated
+        //                                      ^^^^^^^^^
+        String size = TextUtils.split(last, 3);
+        try {
+            // size is in 1k blocks
+            device.freeSpace = Long.parseLong(size) * 1000L;
+        } catch (Exception e) {
+            log.trace("fetchDeviceDetails: FREE_SPACE Exception:{}", e.getMessage());
         }
     }
 
@@ -359,32 +544,34 @@ public class DeviceManager {
         RemoteFile file = new RemoteFile(FILE_CUSTOM_PROP);
         try {
             device.jadbDevice.pull(file, outputStream);
-            String customPropStr = outputStream.toString();
-            String[] customPropArr = customPropStr.split("\\n+");
-            for (String customProp : customPropArr) {
-                String[] propArr = customProp.split("=", 2);
-                if (propArr.length < 2) continue;
-                String propKey = propArr[0];
-                String propValue = propArr[1];
-                // old versions replaced spaces with "~"
-                propValue = propValue.replaceAll("~", " ");
-                if (device.customPropertyMap == null) device.customPropertyMap = new HashMap<>();
-                device.customPropertyMap.put(propKey, propValue);
-            }
+            parseCustomProperties(device, outputStream.toString());
         } catch (Exception e) {
             // NOTE: this is normal as file won't exist unless set
             //log.trace("fetchDeviceDetails: PULL Exception:{}", e.getMessage());
         }
     }
 
-    private void fetchNickname(Device device) {
-        ShellResult result = runShell(device, COMMAND_DEVICE_NICKNAME);
-        if (result.isSuccess && !result.resultList.isEmpty()) {
-            String nickname = result.resultList.get(0).trim();
-            // look for error: "cmd: Can't find service: settings"
-            if (!TextUtils.containsIgnoreCase(nickname, "Can't find service")) {
-                device.nickname = nickname;
-            }
+    private void parseCustomProperties(Device device, String customPropStr) {
+        if (customPropStr == null) return;
+        String[] customPropArr = customPropStr.split("\\n+");
+        for (String customProp : customPropArr) {
+            String[] propArr = customProp.split("=", 2);
+            if (propArr.length < 2) continue;
+            String propKey = propArr[0];
+            String propValue = propArr[1];
+            // old versions replaced spaces with "~"
+            propValue = propValue.replaceAll("~", " ");
+            if (device.customPropertyMap == null) device.customPropertyMap = new HashMap<>();
+            device.customPropertyMap.put(propKey, propValue);
+        }
+    }
+
+    private void parseNickname(Device device, List<String> lineList) {
+        if (lineList == null || lineList.isEmpty()) return;
+        String nickname = lineList.get(0).trim();
+        // look for error: "cmd: Can't find service: settings"
+        if (!TextUtils.containsIgnoreCase(nickname, "Can't find service")) {
+            device.nickname = nickname;
         }
     }
 
@@ -394,13 +581,18 @@ public class DeviceManager {
     private String runShellServiceCall(Device device, String command) {
         ShellResult result = runShell(device, command);
         if (!result.isSuccess) return null;
+        return parseServiceCall(result.resultList);
+    }
+
+    private String parseServiceCall(List<String> lineList) {
+        if (lineList == null) return null;
         // Result: Parcel(
         // 0x00000000: 00000000 0000000b 00350031 00300034 '........1.2.2.2.'
         // 0x00000010: 00310039 00390034 00310032 00000034 '3.3.3.4.4.4.4...')
         StringBuilder sb = null;
-        if (result.resultList.size() > 1) {
-            for (int i = 1; i < result.resultList.size(); i++) {
-                String line = result.resultList.get(i);
+        if (lineList.size() > 1) {
+            for (int i = 1; i < lineList.size(); i++) {
+                String line = lineList.get(i);
                 int stPos = line.indexOf('\'');
                 if (stPos >= 0) {
                     int endPos = line.indexOf('\'', stPos + 1);
@@ -413,7 +605,7 @@ public class DeviceManager {
                 }
             }
         }
-        //log.trace("runShellServiceCall: RESULTS: {}", result);
+        //log.trace("runShellServiceCall: RESULTS: {}", lineList);
         return sb != null ? sb.toString() : null;
     }
 
@@ -421,9 +613,7 @@ public class DeviceManager {
      * @return copy of device list
      */
     public List<Device> getDevices() {
-        synchronized (deviceList) {
-            return new ArrayList<>(deviceList);
-        }
+        return new ArrayList<>(deviceMap.values());
     }
 
     public static class ShellResult {
@@ -440,6 +630,15 @@ public class DeviceManager {
      * run a shell command and return multi-line output
      */
     private ShellResult runShell(Device device, String command) {
+        return runShell(device, command, null);
+    }
+
+    /**
+     * run a shell command and return multi-line output
+     *
+     * @param task optional multi-device task which can close the stream on timeout/cancel
+     */
+    private ShellResult runShell(Device device, String command, MultiDeviceTask task) {
         ShellResult result = new ShellResult();
         result.resultList = new ArrayList<>();
         List<String> commandList = TextUtils.splitSafe(command);
@@ -448,7 +647,9 @@ public class DeviceManager {
             String firstCommand = commandList.get(0);
             List<String> subList = commandList.subList(1, commandList.size());
             //log.trace("runShell: COMMAND:{}, ARGS:{}", firstCommand, GsonHelper.toJson(subList));
+            shellCommandCounter.increment();
             inputStream = device.jadbDevice.executeShell(firstCommand, subList.toArray(new String[0]));
+            if (task != null) task.trackStream(device, inputStream);
             BufferedReader input = new BufferedReader(new InputStreamReader(inputStream));
             String line;
             while ((line = input.readLine()) != null) {
@@ -460,6 +661,7 @@ public class DeviceManager {
             log.error("runShell: cmd:{}, Exception: {}", command, e.getMessage());
             result.isSuccess = false;
         } finally {
+            if (task != null) task.untrackStream(device);
             if (inputStream != null) {
                 try {
                     inputStream.close();
@@ -470,15 +672,33 @@ public class DeviceManager {
         return result;
     }
 
-    private Device getDevice(String serial) {
-        synchronized (deviceList) {
-            for (Device device : deviceList) {
-                if (TextUtils.equals(device.serial, serial)) {
-                    return device;
-                }
+    /**
+     * run a shell script as-is (no argument quoting) and return multi-line output
+     */
+    private ShellResult runShellScript(Device device, String script) {
+        ShellResult result = new ShellResult();
+        result.resultList = new ArrayList<>();
+        shellCommandCounter.increment();
+        try (InputStream inputStream = device.jadbDevice.executeShell(script)) {
+            BufferedReader input = new BufferedReader(new InputStreamReader(inputStream));
+            String line;
+            while ((line = input.readLine()) != null) {
+                result.resultList.add(line);
             }
+            result.isSuccess = true;
+        } catch (Exception e) {
+            log.error("runShellScript: {}, Exception: {}", device.serial, e.getMessage());
+            result.isSuccess = false;
         }
-        return null;
+        return result;
+    }
+
+    /**
+     * @return known device (online or not) with given serial or null
+     */
+    public Device getDevice(String serial) {
+        if (serial == null) return null;
+        return deviceMap.get(serial);
     }
 
     /**
@@ -552,42 +772,65 @@ public class DeviceManager {
         });
     }
 
-    public void setProperty(Device device, String key, String value, TaskListener listener) {
-        commandExecutorService.submit(() -> {
-            if (device.customPropertyMap == null) device.customPropertyMap = new HashMap<>();
-            // update property
-            device.customPropertyMap.put(key, value);
-            // turn into key=value string
-            StringBuilder sb = new StringBuilder();
-            for (Map.Entry<String, String> entry : device.customPropertyMap.entrySet()) {
-                sb.append(entry.getKey()).append("=").append(entry.getValue()).append("\n");
-            }
-            RemoteFile remote = new RemoteFile(FILE_CUSTOM_PROP);
-            // write to properties file on device
-            try {
-                InputStream stream = new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
-                device.jadbDevice.push(stream, System.currentTimeMillis() / 1000, JadbDevice.DEFAULT_MODE, remote);
-                log.debug("setProperty: {}, key:{}, value:{}, DONE", device.serial, key, value);
-                if (listener != null) listener.onTaskComplete(true, null);
-            } catch (Exception e) {
-                log.error("setProperty: {}, {}={}Exception:{}", device.serial, key, value, e.getMessage());
-                if (listener != null) listener.onTaskComplete(false, e.getMessage());
-            }
-        });
+    /**
+     * set custom property on multiple devices at the same time
+     * NOTE: file push can't be interrupted; cancel only skips devices that haven't started
+     */
+    public MultiDeviceTask setProperty(List<Device> deviceList, String key, String value, int concurrency,
+                                       DeviceTaskListener deviceListener, TaskListener listener) {
+        return runOnDevices(deviceList, "setProperty " + key, (device, task) -> setProperty(device, key, value),
+                concurrency, 0, deviceListener, listener);
     }
 
-    public void installApp(Device device, File file, TaskListener listener) {
-        commandExecutorService.submit(() -> {
-            try {
-                PackageManager packageManager = new PackageManager(device.jadbDevice);
-                packageManager.install(file);
-                if (listener != null) listener.onTaskComplete(true, null);
-            } catch (Exception e) {
-                log.error("installApp: {}, {}", file.getAbsolutePath(), e.getMessage());
-                device.status = "failed: " + e.getMessage();
-                if (listener != null) listener.onTaskComplete(false, e.getMessage());
+    private ShellResult setProperty(Device device, String key, String value) {
+        ShellResult result = new ShellResult();
+        result.resultList = new ArrayList<>();
+        if (device.customPropertyMap == null) device.customPropertyMap = new HashMap<>();
+        // update property
+        device.customPropertyMap.put(key, value);
+        // turn into key=value string
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : device.customPropertyMap.entrySet()) {
+            sb.append(entry.getKey()).append("=").append(entry.getValue()).append("\n");
+        }
+        RemoteFile remote = new RemoteFile(FILE_CUSTOM_PROP);
+        // write to properties file on device
+        try {
+            InputStream stream = new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8));
+            device.jadbDevice.push(stream, System.currentTimeMillis() / 1000, JadbDevice.DEFAULT_MODE, remote);
+            log.debug("setProperty: {}, key:{}, value:{}, DONE", device.serial, key, value);
+            result.isSuccess = true;
+        } catch (Exception e) {
+            log.error("setProperty: {}, {}={}Exception:{}", device.serial, key, value, e.getMessage());
+            result.resultList.add(e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * install apps on multiple devices at the same time; apps are installed 1 at a time on each device
+     * NOTE: installs can take minutes and can't be interrupted; cancel only skips devices that haven't started
+     */
+    public MultiDeviceTask installApps(List<Device> deviceList, List<File> apkList, int concurrency,
+                                       DeviceTaskListener deviceListener, TaskListener listener) {
+        return runOnDevices(deviceList, "install " + apkList.size() + " app(s)", (device, task) -> {
+            ShellResult result = new ShellResult();
+            result.resultList = new ArrayList<>();
+            result.isSuccess = true;
+            for (File file : apkList) {
+                try {
+                    PackageManager packageManager = new PackageManager(device.jadbDevice);
+                    packageManager.install(file);
+                    result.resultList.add(file.getName());
+                } catch (Exception e) {
+                    log.error("installApps: {}, {}", file.getAbsolutePath(), e.getMessage());
+                    device.status = "failed: " + e.getMessage();
+                    result.isSuccess = false;
+                    result.resultList.add(file.getName() + ": " + e.getMessage());
+                }
             }
-        });
+            return result;
+        }, concurrency, 0, deviceListener, listener);
     }
 
     private void copyFilesInternal(Device device, List<File> fileList, String dest, ProgressListener progressListener) {
@@ -606,8 +849,10 @@ public class DeviceManager {
             } else {
                 log.trace("copyFilesInternal: FILE: {}", destFilename);
                 try {
+                    Timer timer = new Timer();
                     RemoteFile remoteFile = new RemoteFileRecord(dest, filename, 0, 0, 0);
-                    device.jadbDevice.push(file, remoteFile);
+                    device.jadbDevice.push(file.toPath(), remoteFile);
+                    if (log.isTraceEnabled()) log.trace("copyFilesInternal: DONE: {}, {}", timer, getTransferRate(file.length(), timer));
                 } catch (Exception e) {
                     log.error("copyFile: {} -> {}, Exception:{}", file.getAbsolutePath(), dest, e.getMessage());
                 }
@@ -615,6 +860,14 @@ public class DeviceManager {
         }
     }
 
+    /**
+     * @return transfer rate in MB/s for logging
+     */
+    private String getTransferRate(long numBytes, Timer timer) {
+        long elapsedMs = Math.max(1, timer.elapsedTimeMs());
+        return String.format("%.1f MB/s", (numBytes / (1024.0 * 1024.0)) / (elapsedMs / 1000.0));
+    }
+
     public void copyFiles(Device device, List<File> fileList, String dest, ProgressListener progressListener, TaskListener listener) {
         commandExecutorService.submit(() -> {
             // come up with total files to copy
@@ -628,26 +881,174 @@ public class DeviceManager {
         });
     }
 
-    public void restartDevice(Device device, TaskListener listener) {
-        commandExecutorService.submit(() -> {
-            runShell(device, COMMAND_REBOOT);
-            // TODO: detect success/fail
-            listener.onTaskComplete(true, null);
-        });
+    public interface DeviceTaskListener {
+        /**
+         * called once per device as soon as that device finishes (on a background thread)
+         */
+        void onDeviceComplete(Device device, boolean isSuccess, String result);
     }
 
-    public void runCustomCommand(Device device, String customCommand, TaskListener listener) {
-        commandExecutorService.submit(() -> {
-            ShellResult result = runShell(device, customCommand);
-            boolean isSuccess = result.isSuccess;
-            log.trace("runCustomCommand: DONE: success:{}, {}", isSuccess, GsonHelper.toJson(result.resultList));
-            String displayStr = TextUtils.join(result.resultList, "\n");
+    /**
+     * work done on a single device by runOnDevices()
+     */
+    private interface DeviceAction {
+        /**
+         * called on a background thread; shell streams should be passed to task.trackStream() so they're closed on
+         * timeout/cancel
+         */
+        ShellResult run(Device device, MultiDeviceTask task);
+    }
+
+    /**
+     * handle to a command running on multiple devices
+     */
+    public static class MultiDeviceTask {
+        private final AtomicBoolean isCancelled = new AtomicBoolean(false);
+        private final Map<String, InputStream> streamMap = new ConcurrentHashMap<>();
+        private final Set<String> timedOutSet = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger numRemaining;
+        private final AtomicInteger numFailed = new AtomicInteger();
+
+        MultiDeviceTask(int numDevices) {
+            numRemaining = new AtomicInteger(numDevices);
+        }
+
+        /**
+         * stop any devices that haven't started and close streams of running devices
+         */
+        public void cancel() {
+            if (!isCancelled.compareAndSet(false, true)) return;
+            for (String serial : streamMap.keySet()) {
+                closeStream(serial);
+            }
+        }
+
+        public boolean isCancelled() {
+            return isCancelled.get();
+        }
+
+        public boolean isDone() {
+            return numRemaining.get() == 0;
+        }
+
+        void trackStream(Device device, InputStream inputStream) {
+            streamMap.put(device.serial, inputStream);
+            // cancelled or timed out while connecting
+            if (isCancelled.get() || timedOutSet.contains(device.serial)) closeStream(device.serial);
+        }
+
+        void untrackStream(Device device) {
+            streamMap.remove(device.serial);
+        }
+
+        void timeout(Device device) {
+            timedOutSet.add(device.serial);
+            closeStream(device.serial);
+        }
+
+        private void closeStream(String serial) {
+            InputStream inputStream = streamMap.remove(serial);
+            if (inputStream == null) return;
+            try {
+                inputStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * run a shell command on multiple devices at the same time
+     *
+     * @param concurrency    max number of devices to run at once
+     * @param timeoutMs      max time to wait for a single device
+     * @param deviceListener called as each device completes
+     * @param listener       called once all devices complete; success only if every device succeeded
+     */
+    public MultiDeviceTask runOnDevices(List<Device> deviceList, String command, int concurrency, long timeoutMs,
+                                        DeviceTaskListener deviceListener, TaskListener listener) {
+        return runOnDevices(deviceList, command, (device, task) -> {
+            ShellResult result = runShell(device, command, task);
+            // stream was closed; output is incomplete
+            if (task.isCancelled()) result.isSuccess = false;
             // check if command runs but fails
-            if (TextUtils.containsIgnoreCase(displayStr, "inaccessible or not found")) {
-                isSuccess = false;
+            if (result.isSuccess && TextUtils.containsIgnoreCase(TextUtils.join(result.resultList, "\n"), "inaccessible or not found")) {
+                result.isSuccess = false;
             }
-            if (listener != null) listener.onTaskComplete(isSuccess, displayStr);
-        });
+            return result;
+        }, concurrency, timeoutMs, deviceListener, listener);
+    }
+
+    /**
+     * cancel all commands running on multiple devices
+     *
+     * @return number of commands cancelled
+     */
+    public int cancelTasks() {
+        int numCancelled = 0;
+        for (MultiDeviceTask task : runningTaskSet) {
+            if (task.isCancelled()) continue;
+            task.cancel();
+            numCancelled++;
+        }
+        log.debug("cancelTasks: {}", numCancelled);
+        return numCancelled;
+    }
+
+    /**
+     * @param name      used for logging
+     * @param timeoutMs max time to wait for a single device; 0 for none
+     */
+    private MultiDeviceTask runOnDevices(List<Device> deviceList, String name, DeviceAction action, int concurrency, long timeoutMs,
+                                         DeviceTaskListener deviceListener, TaskListener listener) {
+        MultiDeviceTask task = new MultiDeviceTask(deviceList.size());
+        if (deviceList.isEmpty()) {
+            if (listener != null) listener.onTaskComplete(true, null);
+            return task;
+        }
+        runningTaskSet.add(task);
+        ConcurrentLinkedQueue<Device> queue = new ConcurrentLinkedQueue<>(deviceList);
+        Timer timer = new Timer();
+        int numWorkers = Math.max(1, Math.min(concurrency, deviceList.size()));
+        for (int i = 0; i < numWorkers; i++) {
+            multiDeviceExecutorService.submit(() -> {
+                Device device;
+                while ((device = queue.poll()) != null) {
+                    boolean isSuccess = false;
+                    String resultStr;
+                    if (task.isCancelled()) {
+                        resultStr = "cancelled";
+                    } else {
+                        Device timeoutDevice = device;
+                        ScheduledFuture<?> timeoutFuture = null;
+                        if (timeoutMs > 0) {
+                            timeoutFuture = scheduledExecutorService.schedule(() -> task.timeout(timeoutDevice), timeoutMs, TimeUnit.MILLISECONDS);
+                        }
+                        ShellResult result = action.run(device, task);
+                        if (timeoutFuture != null) timeoutFuture.cancel(false);
+                        resultStr = TextUtils.join(result.resultList, "\n");
+                        isSuccess = result.isSuccess;
+                        if (task.timedOutSet.contains(device.serial)) {
+                            isSuccess = false;
+                            resultStr = "timed out after " + timeoutMs + "ms";
+                        } else if (task.isCancelled() && !isSuccess) {
+                            resultStr = "cancelled";
+                        }
+                    }
+                    if (!isSuccess) task.numFailed.incrementAndGet();
+                    if (deviceListener != null) deviceListener.onDeviceComplete(device, isSuccess, resultStr);
+
+                    if (task.numRemaining.decrementAndGet() == 0) {
+                        runningTaskSet.remove(task);
+                        int numFailed = task.numFailed.get();
+                        log.debug("runOnDevices: DONE: {}, {}, devices:{}, failed:{}", timer, name, deviceList.size(), numFailed);
+                        if (listener != null) {
+                            listener.onTaskComplete(numFailed == 0, numFailed == 0 ? null : "failed on " + numFailed + " device(s)");
+                        }
+                    }
+                }
+            });
+        }
+        return task;
     }
 
     public void openTerminal(Device device, TaskListener listener) {
@@ -754,7 +1155,9 @@ public class DeviceManager {
             log.trace("downloadFileInternal: {}/{} -> {}", path, file.name, saveFile.getAbsolutePath());
             RemoteFile remoteFile = new RemoteFileRecord(path, file.name, 0, 0, 0);
             try {
-                device.jadbDevice.pull(remoteFile, saveFile);
+                Timer timer = new Timer();
+                device.jadbDevice.pull(remoteFile, saveFile.toPath());
+                if (log.isTraceEnabled()) log.trace("downloadFileInternal: DONE: {}, {}", timer, getTransferRate(saveFile.length(), timer));
             } catch (Exception e) {
                 log.error("downloadFileInternal: {}/{}, Exception:{}", path, file.name, e.getMessage());
             }
@@ -837,116 +1240,79 @@ public class DeviceManager {
     }
 
     public interface DeviceLogListener {
+        /**
+         * called on the EDT with entries read since the last call
+         */
         void handleLogEntries(List<LogEntry> logEntryList);
 
-        void handleProcessMap(Map<String, String> processMap);
+        /**
+         * called with processes (PID -> app) found since last call
+         */
+        void handleProcessMap(Map<Integer, String> processMap);
     }
 
-    public void startLogging(Device device, Long startTime, DeviceLogListener listener) {
-        stopLogging(device);
-        commandExecutorService.submit(() -> {
-            log.debug("startLogging: {}", startTime);
-            isLogging.set(true);
-            InputStream inputStream = null;
-            try {
-                String[] args = new String[]{"-v", "threadtime"};
-                inputStream = device.jadbDevice.executeShell("logcat", args);
-                BufferedReader input = new BufferedReader(new InputStreamReader(inputStream));
-
-                long lastUpdateMs = System.currentTimeMillis();
-                List<LogEntry> logList = new ArrayList<>();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                int year = Calendar.getInstance().get(Calendar.YEAR);
-                String line;
-                while ((line = input.readLine()) != null) {
-                    LogEntry logEntry = new LogEntry(line, dateFormat, year);
-                    if (logEntry.date == null) continue;
-                    else if (startTime != null && startTime > logEntry.timestamp) {
-                        //log.trace("startLogging: too old: {} ({}) vs {}", logEntry.timestamp, logEntry.date, startTime);
-                        continue;
-                    }
-
-                    logList.add(logEntry);
-
-                    // only update every X ms
-                    if (System.currentTimeMillis() - lastUpdateMs >= 100 && !logList.isEmpty()) {
-                        // update
-                        listener.handleLogEntries(logList);
-                        logList.clear();
-                        lastUpdateMs = System.currentTimeMillis();
-
-                        // check if logging is still running
-                        if (!isLogging.get()) break;
-                    }
-                }
-            } catch (Exception e) {
-                log.error("startLogging: {}", e.getMessage());
-            } finally {
-                if (inputStream != null) {
-                    try {
-                        inputStream.close();
-                    } catch (IOException ignored) {
-                    }
-                }
-            }
-        });
-
-        // run a periodic task to fetch running apps from device so logs can replace PID with app name
-        commandExecutorService.submit(() -> {
-            Map<String, String> pidMap = getProcessMap(device);
-            if (!pidMap.isEmpty()) {
-                listener.handleProcessMap(pidMap);
-            }
-            // check if logging is still running and schedule next lookup
-            if (isLogging.get()) {
-                scheduleNextProcessCheck(device, listener);
-            }
-        });
-    }
-
-    private void scheduleNextProcessCheck(Device device, DeviceLogListener listener) {
-        // make sure logging is still running
-        if (!isLogging.get()) return;
-
-        // run in 30 seconds
-        scheduledExecutorService.schedule(() -> {
-            // make sure logging is still running
-            if (!isLogging.get()) return;
-
-            Map<String, String> pidMap = getProcessMap(device);
-            listener.handleProcessMap(pidMap);
-            scheduleNextProcessCheck(device, listener);
-        }, 30, TimeUnit.SECONDS);
+    /**
+     * start logging device; any previous session for the same device and listener is stopped
+     *
+     * @param cursor     where to resume from; device only sends entries logged since then and cursor is updated as
+     *                   entries are read (pass the same cursor again to continue where the last session stopped)
+     * @param filterArgs logcat args to filter logs on device (see LogcatFilterSpec); empty for none
+     */
+    public void startLogging(Device device, LogCursor cursor, List<String> filterArgs, DeviceLogListener listener) {
+        LogSession session = new LogSession(device, cursor, filterArgs, listener);
+        LogSession prevSession = logSessionMap.put(new LogSessionKey(device.serial, listener), session);
+        if (prevSession != null) prevSession.stop();
+        // readers block for as long as the session runs; use the unbounded pool so devices don't wait on each other
+        session.start(multiDeviceExecutorService, scheduledExecutorService);
     }
 
-    private Map<String, String> getProcessMap(Device device) {
-        ShellResult result = runShell(device, COMMAND_LIST_PROCESSES);
+    /**
+     * @param pidList PIDs to look up; null for all running processes
+     * @return PID -> app name or null if command failed
+     */
+    Map<Integer, String> getProcessMap(Device device, List<Integer> pidList) {
+        String command = COMMAND_LIST_PROCESSES;
+        if (pidList != null) {
+            command = COMMAND_LIST_PIDS + pidList.stream().map(String::valueOf).collect(Collectors.joining(","));
+        }
+        ShellResult result = runShell(device, command);
+        if (!result.isSuccess) return null;
         // 7617 com.android.traceur
         // 7677 [csf_sync_update]
-        Map<String, String> pidMap = new HashMap<>();
+        Map<Integer, String> pidMap = new HashMap<>();
         for (String line : result.resultList) {
             String[] lineArr = line.trim().split(" ");
             if (lineArr.length < 2) continue;
-            String pid = lineArr[0];
             String app = lineArr[1];
             int atPos = app.indexOf('@');
             if (atPos > 0) {
                 app = app.substring(0, atPos);
             }
-            pidMap.put(pid, app);
+            try {
+                pidMap.put(Integer.parseInt(lineArr[0]), app);
+            } catch (NumberFormatException ignored) {
+                // header
+            }
         }
         return pidMap;
     }
 
-    public void stopLogging(Device device) {
-        if (isLogging.get()) {
-            log.debug("stopLogging: ");
-            isLogging.set(false);
-        }
+    public void stopLogging(Device device, DeviceLogListener listener) {
+        LogSession session = logSessionMap.remove(new LogSessionKey(device.serial, listener));
+        if (session != null) session.stop();
     }
 
-    public boolean isLogging(Device device) {
-        return isLogging.get();
+    /**
+     * @return line counters of current logging session; null if device isn't logging
+     */
+    public LogBuffer.Stats getLogStats(Device device, DeviceLogListener listener) {
+        LogSession session = logSessionMap.get(new LogSessionKey(device.serial, listener));
+        return session != null ? session.getStats() : null;
+    }
+
+    public boolean isLogging(Device device, DeviceLogListener listener) {
+        LogSession session = logSessionMap.get(new LogSessionKey(device.serial, listener));
+        return session != null && session.isRunning();
     }
 
     public void handleExit() {
@@ -955,6 +1321,11 @@ public class DeviceManager {
             processCopyList = new ArrayList<>(processList);
         }
 
+        for (LogSession session : logSessionMap.values()) {
+            session.stop();
+        }
+        logSessionMap.clear();
+
         for (Process process : processCopyList) {
             if (process.isAlive()) {
                 log.debug("handleExit: killing: {}", process);
@@ -962,8 +1333,11 @@ public class DeviceManager {
             }
         }
 
-        if (deviceRefreshRuture != null) deviceRefreshRuture.cancel(true);
+        if (refreshScheduler != null) refreshScheduler.stop();
+        if (statsFuture != null) statsFuture.cancel(false);
+        if (connection != null) connection.disableTransportPool();
         commandExecutorService.shutdownNow();
+        multiDeviceExecutorService.shutdownNow();
         scheduledExecutorService.shutdownNow();
     }
 
@@ -1169,13 +1543,18 @@ public class DeviceManager {
     private String getAppVersion(Device device, String appPkg) {
         // shell dumpsys package $PACKAGE | grep versionName | sed 's/    versionName=//')
         ShellResult result = runShell(device, "dumpsys package " + appPkg);
-        for (String appLine : result.resultList) {
+        String versionName = parseAppVersion(result.resultList);
+        if (versionName != null) log.trace("getAppVersion: {} -> {}", appPkg, versionName);
+        return versionName;
+    }
+
+    private String parseAppVersion(List<String> lineList) {
+        if (lineList == null) return null;
+        for (String appLine : lineList) {
             // "    versionName=24.05.16.160",
             int index = appLine.indexOf("versionName=");
             if (index > 0) {
-                String versionName = appLine.substring(index + "versionName=".length());
-                log.trace("getAppVersion: {} -> {}", appPkg, versionName);
-                return versionName;
+                return appLine.substring(index + "versionName=".length());
             }
         }
         return null;
@@ -0,0 +1,227 @@
+package com.jpage4500.devicemanager.manager;
+
+import com.jpage4500.devicemanager.data.Device;
+import com.jpage4500.devicemanager.data.DeviceChange;
+import com.jpage4500.devicemanager.utils.RateCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * schedules periodic refresh of device values that change often (battery, disk space, app versions)
+ * - each value has it's own refresh interval
+ * - interval doubles (up to a max) each time a value is unchanged and resets once it changes
+ * - devices are jittered so they don't all hit the adb server at the same time
+ * - devices visible in the table are refreshed first and more often
+ */
+public class DeviceRefreshScheduler {
+    private static final Logger log = LoggerFactory.getLogger(DeviceRefreshScheduler.class);
+
+    // values refreshed by this scheduler
+    public static final Set<DeviceChange.Field> TELEMETRY_FIELDS = Collections.unmodifiableSet(EnumSet.of(
+            DeviceChange.Field.BATTERY, DeviceChange.Field.FREE_SPACE, DeviceChange.Field.APP_VERSIONS));
+
+    private static final long TICK_MS = TimeUnit.SECONDS.toMillis(5);
+    // max number of devices to start refreshing per tick
+    private static final int MAX_DEVICES_PER_TICK = 8;
+    // devices not visible in the table are refreshed this much less often
+    private static final int HIDDEN_FACTOR = 3;
+    // +/- percent of interval
+    private static final double JITTER = 0.1;
+
+    /**
+     * refresh cadence for a single value
+     */
+    private enum Cadence {
+        // NOTE: battery changes on most checks while charging/discharging; min is the old fixed 5 min so it's never polled more often
+        BATTERY(DeviceChange.Field.BATTERY, TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(20)),
+        FREE_SPACE(DeviceChange.Field.FREE_SPACE, TimeUnit.MINUTES.toMillis(5), TimeUnit.MINUTES.toMillis(40)),
+        APP_VERSIONS(DeviceChange.Field.APP_VERSIONS, TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(60)),
+        ;
+        final DeviceChange.Field field;
+        final long minIntervalMs;
+        final long maxIntervalMs;
+
+        Cadence(DeviceChange.Field field, long minIntervalMs, long maxIntervalMs) {
+            this.field = field;
+            this.minIntervalMs = minIntervalMs;
+            this.maxIntervalMs = maxIntervalMs;
+        }
+    }
+
+    public interface Fetcher {
+        /**
+         * refresh given values and call listener with values that changed
+         */
+        void fetch(Device device, Set<DeviceChange.Field> fieldSet, RefreshListener listener);
+    }
+
+    public interface RefreshListener {
+        void onRefreshed(Set<DeviceChange.Field> changedSet);
+    }
+
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final Supplier<Collection<Device>> deviceSupplier;
+    private final Fetcher fetcher;
+
+    private final Map<String, DeviceState> stateMap = new ConcurrentHashMap<>();
+    // devices currently being refreshed
+    private final Set<String> inFlightSet = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> visibleSet = Collections.emptySet();
+    private ScheduledFuture<?> tickFuture;
+
+    private final RateCounter refreshCounter = new RateCounter();
+
+    private static class FieldState {
+        final Cadence cadence;
+        long intervalMs;
+        long lastRefreshMs;
+        long jitterMs;
+
+        FieldState(Cadence cadence, long now) {
+            this.cadence = cadence;
+            intervalMs = cadence.minIntervalMs;
+            // device just had a full refresh; spread first refresh between 1/2 and 1 interval
+            lastRefreshMs = now;
+            jitterMs = -(long) (ThreadLocalRandom.current().nextDouble() * intervalMs / 2);
+        }
+
+        boolean isDue(long now, boolean isVisible) {
+            long interval = isVisible ? intervalMs : intervalMs * HIDDEN_FACTOR;
+            return now >= lastRefreshMs + interval + jitterMs;
+        }
+
+        void onRefreshed(long now, boolean isChanged) {
+            if (isChanged) intervalMs = cadence.minIntervalMs;
+            else intervalMs = Math.min(intervalMs * 2, cadence.maxIntervalMs);
+            lastRefreshMs = now;
+            long range = (long) (intervalMs * JITTER);
+            jitterMs = range > 0 ? ThreadLocalRandom.current().nextLong(-range, range) : 0;
+        }
+    }
+
+    private static class DeviceState {
+        final EnumMap<DeviceChange.Field, FieldState> fieldMap = new EnumMap<>(DeviceChange.Field.class);
+
+        DeviceState(long now) {
+            for (Cadence cadence : Cadence.values()) {
+                fieldMap.put(cadence.field, new FieldState(cadence, now));
+            }
+        }
+
+        /**
+         * @return earliest time any field is due
+         */
+        synchronized long getDueMs(boolean isVisible) {
+            long due = Long.MAX_VALUE;
+            for (FieldState state : fieldMap.values()) {
+                long interval = isVisible ? state.intervalMs : state.intervalMs * HIDDEN_FACTOR;
+                due = Math.min(due, state.lastRefreshMs + interval + state.jitterMs);
+            }
+            return due;
+        }
+
+        synchronized EnumSet<DeviceChange.Field> getDueFields(long now, boolean isVisible) {
+            EnumSet<DeviceChange.Field> dueSet = EnumSet.noneOf(DeviceChange.Field.class);
+            for (FieldState state : fieldMap.values()) {
+                if (state.isDue(now, isVisible)) dueSet.add(state.cadence.field);
+            }
+            return dueSet;
+        }
+
+        synchronized void onRefreshed(Set<DeviceChange.Field> refreshedSet, Set<DeviceChange.Field> changedSet, long now) {
+            for (DeviceChange.Field field : refreshedSet) {
+                fieldMap.get(field).onRefreshed(now, changedSet.contains(field));
+            }
+        }
+    }
+
+    public DeviceRefreshScheduler(ScheduledExecutorService scheduledExecutorService, Supplier<Collection<Device>> deviceSupplier, Fetcher fetcher) {
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.deviceSupplier = deviceSupplier;
+        this.fetcher = fetcher;
+    }
+
+    public synchronized void start() {
+        if (tickFuture != null) return;
+        tickFuture = scheduledExecutorService.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (tickFuture == null) return;
+        tickFuture.cancel(false);
+        tickFuture = null;
+    }
+
+    /**
+     * set devices that are currently visible to the user; these are refreshed first
+     */
+    public void setVisibleDevices(Collection<String> serialList) {
+        visibleSet = new HashSet<>(serialList);
+    }
+
+    /**
+     * reset intervals for a device; ie: after a full refresh
+     */
+    public void resetDevice(Device device) {
+        stateMap.put(device.serial, new DeviceState(System.currentTimeMillis()));
+    }
+
+    public void removeDevice(Device device) {
+        stateMap.remove(device.serial);
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            Set<String> visible = visibleSet;
+
+            List<Device> dueList = new ArrayList<>();
+            for (Device device : deviceSupplier.get()) {
+                if (!device.isOnline || inFlightSet.contains(device.serial)) continue;
+                DeviceState state = stateMap.computeIfAbsent(device.serial, k -> new DeviceState(now));
+                if (!state.getDueFields(now, visible.contains(device.serial)).isEmpty()) dueList.add(device);
+            }
+
+            if (dueList.size() > MAX_DEVICES_PER_TICK) {
+                // visible devices first, then devices that have been waiting the longest
+                dueList.sort(Comparator
+                        .comparing((Device d) -> !visible.contains(d.serial))
+                        .thenComparingLong(d -> stateMap.get(d.serial).getDueMs(visible.contains(d.serial))));
+                dueList = dueList.subList(0, MAX_DEVICES_PER_TICK);
+            }
+
+            for (Device device : dueList) {
+                refresh(device, stateMap.get(device.serial), now, visible.contains(device.serial));
+            }
+        } catch (Exception e) {
+            // don't let an exception cancel future ticks
+            log.error("tick: Exception: {}", e.getMessage());
+        }
+    }
+
+    private void refresh(Device device, DeviceState state, long now, boolean isVisible) {
+        EnumSet<DeviceChange.Field> dueSet = state.getDueFields(now, isVisible);
+        inFlightSet.add(device.serial);
+        refreshCounter.increment();
+        fetcher.fetch(device, dueSet, changedSet -> {
+            state.onRefreshed(dueSet, changedSet, System.currentTimeMillis());
+            inFlightSet.remove(device.serial);
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "devices:" + stateMap.size() +
+                ", visible:" + visibleSet.size() +
+                ", inFlight:" + inFlightSet.size() +
+                ", refreshes:" + refreshCounter;
+    }
+}
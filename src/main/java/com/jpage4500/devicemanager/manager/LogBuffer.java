@@ -0,0 +1,221 @@
+package com.jpage4500.devicemanager.manager;
+
+import com.jpage4500.devicemanager.data.LogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * bounded handoff of log entries from a single reader thread to the EDT
+ * - reader calls offer(); a Swing timer drains whatever is waiting every UPDATE_MS (updates are coalesced into 1 batch)
+ * - when the EDT falls behind and the buffer fills up, the {@link OverflowPolicy} decides what happens
+ * - each slot is stamped with its sequence so the EDT can tell when the reader lapped it (DROP_OLDEST)
+ * <p>
+ * NOTE: only 1 thread may call offer()
+ */
+public class LogBuffer {
+    private static final Logger log = LoggerFactory.getLogger(LogBuffer.class);
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    // how often the EDT picks up new entries
+    private static final int UPDATE_MS = 100;
+    // max entries handed to the EDT at once; the rest are picked up on the next update
+    private static final int MAX_BATCH = 50000;
+    private static final long BLOCK_WAIT_NS = 1_000_000;
+
+    public enum OverflowPolicy {
+        /**
+         * reader waits for the EDT to catch up (nothing is dropped here; logcat itself may drop on device)
+         */
+        BLOCK,
+        /**
+         * newest entries overwrite the oldest ones that haven't been displayed yet
+         */
+        DROP_OLDEST,
+        /**
+         * keep every 2nd, 4th, 8th.. entry as the buffer fills up; new entries are dropped when full
+         */
+        SAMPLE,
+    }
+
+    public interface LogBufferListener {
+        /**
+         * called on the EDT with entries read since the last call
+         */
+        void handleLogEntries(List<LogEntry> logEntryList);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final LogBufferListener listener;
+    private final AtomicReferenceArray<LogEntry> entries;
+    // sequence + 1 of entry in each slot; 0 while being written
+    private final AtomicLongArray seqs;
+    private final javax.swing.Timer timer;
+
+    // next sequence written by reader
+    private volatile long tail;
+    // next sequence read by EDT
+    private volatile long head;
+    private volatile boolean isRunning = true;
+    private long sampleCount;
+
+    private final AtomicLong numRead = new AtomicLong();
+    private final AtomicLong numRendered = new AtomicLong();
+    private final AtomicLong numDropped = new AtomicLong();
+
+    /**
+     * line counters
+     */
+    public static class Stats {
+        public final long numRead;
+        public final long numRendered;
+        public final long numDropped;
+
+        public Stats(long numRead, long numRendered, long numDropped) {
+            this.numRead = numRead;
+            this.numRendered = numRendered;
+            this.numDropped = numDropped;
+        }
+
+        @Override
+        public String toString() {
+            return "read:" + numRead + ", rendered:" + numRendered + ", dropped:" + numDropped;
+        }
+    }
+
+    /**
+     * @param capacity max entries waiting for the EDT (rounded up to a power of 2)
+     */
+    public LogBuffer(int capacity, OverflowPolicy policy, LogBufferListener listener) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.policy = policy;
+        this.listener = listener;
+        entries = new AtomicReferenceArray<>(this.capacity);
+        seqs = new AtomicLongArray(this.capacity);
+        timer = new javax.swing.Timer(UPDATE_MS, e -> drain());
+        timer.start();
+    }
+
+    /**
+     * @return policy saved in preferences (BLOCK by default)
+     */
+    public static OverflowPolicy getOverflowPolicy(String value) {
+        if (value != null) {
+            try {
+                return OverflowPolicy.valueOf(value);
+            } catch (IllegalArgumentException e) {
+                log.debug("getOverflowPolicy: invalid: {}", value);
+            }
+        }
+        return OverflowPolicy.BLOCK;
+    }
+
+    /**
+     * add entry; called by reader thread
+     *
+     * @return false if buffer was stopped
+     */
+    public boolean offer(LogEntry logEntry) {
+        if (!isRunning) return false;
+        numRead.incrementAndGet();
+        long seq = tail;
+        switch (policy) {
+            case BLOCK -> {
+                while (seq - head >= capacity) {
+                    LockSupport.parkNanos(BLOCK_WAIT_NS);
+                    if (!isRunning) return false;
+                }
+            }
+            case SAMPLE -> {
+                long size = seq - head;
+                if (size >= capacity) {
+                    numDropped.incrementAndGet();
+                    return true;
+                } else if (size >= capacity / 2) {
+                    // 1/2 full: keep every 2nd, 3/4: every 4th, 7/8: every 8th
+                    int shift = 1;
+                    while (shift < 3 && size >= capacity - (capacity >> (shift + 1))) shift++;
+                    if ((sampleCount++ & ((1L << shift) - 1)) != 0) {
+                        numDropped.incrementAndGet();
+                        return true;
+                    }
+                } else {
+                    sampleCount = 0;
+                }
+            }
+            case DROP_OLDEST -> {
+                // always write; EDT skips any entries that were overwritten
+            }
+        }
+        int index = (int) (seq & mask);
+        seqs.set(index, 0);
+        entries.set(index, logEntry);
+        seqs.set(index, seq + 1);
+        tail = seq + 1;
+        return true;
+    }
+
+    /**
+     * stop accepting entries; entries already added are still delivered
+     */
+    public void stop() {
+        isRunning = false;
+        SwingUtilities.invokeLater(() -> {
+            drain();
+            timer.stop();
+        });
+    }
+
+    public Stats getStats() {
+        return new Stats(numRead.get(), numRendered.get(), numDropped.get());
+    }
+
+    /**
+     * pass waiting entries to listener; called on EDT
+     */
+    private void drain() {
+        List<LogEntry> logList = new ArrayList<>();
+        long seq = head;
+        while (logList.size() < MAX_BATCH) {
+            int index = (int) (seq & mask);
+            long slotSeq = seqs.get(index);
+            if (slotSeq == seq + 1) {
+                LogEntry logEntry = entries.get(index);
+                if (seqs.get(index) == slotSeq) {
+                    logList.add(logEntry);
+                    seq++;
+                    continue;
+                }
+                // overwritten while reading
+            } else if (slotSeq == 0 || slotSeq <= seq) {
+                // not written yet (or being written)
+                if (tail <= seq) break;
+                // reader is writing this slot again; wait for next update
+                if (slotSeq != 0 || tail - seq <= capacity) break;
+            }
+            // reader lapped us; skip ahead to the oldest entry that's still available
+            long newSeq = Math.max(seq + 1, tail - capacity + 1);
+            numDropped.addAndGet(newSeq - seq);
+            seq = newSeq;
+        }
+        head = seq;
+        if (logList.isEmpty()) return;
+        numRendered.addAndGet(logList.size());
+        listener.handleLogEntries(logList);
+    }
+
+    @Override
+    public String toString() {
+        return policy + ", " + getStats();
+    }
+}
@@ -0,0 +1,98 @@
+package com.jpage4500.devicemanager.manager;
+
+import com.jpage4500.devicemanager.data.LogEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * position in a device's log stream; used to resume logging without reading (or showing) entries again
+ * - time of the last entry read (us) and how many entries were read at exactly that time for each pid/tid
+ * - when resuming, logcat starts slightly before the last entry ('-T') so entries at the same time aren't missed;
+ * entries already read are skipped by matching time + pid + tid
+ * <p>
+ * NOTE: add() is called by the log reader; resume() by whoever starts logging
+ */
+public class LogCursor {
+    // time of last entry (us); Long.MIN_VALUE if none
+    private long time;
+    // (pid, tid) -> number of entries read at 'time'
+    private final Map<Long, Integer> countMap = new HashMap<>();
+
+    /**
+     * @param startTime skip entries logged before this time (ms); null for all
+     */
+    public LogCursor(Long startTime) {
+        time = startTime != null ? startTime * 1000 : Long.MIN_VALUE;
+    }
+
+    private LogCursor(LogCursor cursor) {
+        time = cursor.time;
+        countMap.putAll(cursor.countMap);
+    }
+
+    /**
+     * @return time of last entry read (ms) or null if none
+     */
+    public synchronized Long getTime() {
+        if (time == Long.MIN_VALUE) return null;
+        return Math.floorDiv(time, 1000);
+    }
+
+    /**
+     * record entry as read
+     */
+    synchronized void add(LogEntry logEntry) {
+        long entryTime = getTime(logEntry);
+        if (entryTime > time) {
+            time = entryTime;
+            countMap.clear();
+        } else if (entryTime < time) {
+            // device clock went back; only entries at the newest time are tracked
+            return;
+        }
+        countMap.merge(getKey(logEntry), 1, Integer::sum);
+    }
+
+    /**
+     * @return copy of this cursor to check entries against with isNew() when logging is resumed
+     */
+    synchronized LogCursor resume() {
+        return new LogCursor(this);
+    }
+
+    /**
+     * @return true if entry wasn't read before; entries at the cursor's time are matched once each
+     * NOTE: not thread safe; only used on a copy from resume()
+     */
+    boolean isNew(LogEntry logEntry) {
+        if (time == Long.MIN_VALUE) return true;
+        long entryTime = getTime(logEntry);
+        if (entryTime > time) {
+            // past the resume point; nothing else to skip
+            time = Long.MIN_VALUE;
+            countMap.clear();
+            return true;
+        } else if (entryTime < time) {
+            return false;
+        }
+        Integer count = countMap.get(getKey(logEntry));
+        if (count == null) return true;
+        if (count == 1) countMap.remove(getKey(logEntry));
+        else countMap.put(getKey(logEntry), count - 1);
+        return false;
+    }
+
+    private static long getTime(LogEntry logEntry) {
+        return logEntry.timestamp * 1000 + logEntry.micros;
+    }
+
+    private static long getKey(LogEntry logEntry) {
+        return ((long) logEntry.pid << 32) | (logEntry.tid & 0xffffffffL);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "time:" + getTime() + ", entries:" + countMap.size();
+    }
+}
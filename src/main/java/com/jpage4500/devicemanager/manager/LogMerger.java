@@ -0,0 +1,175 @@
+package com.jpage4500.devicemanager.manager;
+
+import com.jpage4500.devicemanager.data.Device;
+import com.jpage4500.devicemanager.data.LogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * merges logs from multiple devices into a single timeline ordered by timestamp
+ * - each device's entries wait in their own queue; a heap of devices (by oldest waiting entry) picks the next entry
+ * - an entry is released once every other device has something waiting, has already logged past it, or hasn't
+ * sent anything for REORDER_MS (wall-clock), so a device that's briefly behind doesn't end up out of order
+ * - a device that hasn't sent anything yet is waited for up to START_MS (ie: while it's connecting)
+ * - entries are released regardless if more than MAX_PENDING entries are waiting
+ * <p>
+ * NOTE: device clocks aren't synchronized; entries are ordered using each device's own clock
+ * NOTE: called on the EDT only
+ */
+public class LogMerger {
+    private static final Logger log = LoggerFactory.getLogger(LogMerger.class);
+
+    // how long (wall-clock) a device can be quiet before entries from other devices are released without it
+    private static final long REORDER_MS = 1000;
+    // how long to wait for a device's first entries
+    private static final long START_MS = 5000;
+    private static final int MAX_PENDING = 100000;
+    // check for entries to release when no new entries arrive
+    private static final int FLUSH_MS = 200;
+
+    private final MergedLogListener listener;
+    private final Map<String, Source> sourceMap = new HashMap<>();
+    // devices with entries waiting, by timestamp of oldest waiting entry
+    private final PriorityQueue<Source> heap = new PriorityQueue<>(Comparator.comparingLong(source -> source.queue.peekFirst().timestamp));
+    private final javax.swing.Timer timer;
+
+    private int numPending;
+
+    /**
+     * log stream of a single device
+     */
+    private class Source implements DeviceManager.DeviceLogListener {
+        private final String name;
+        private final ArrayDeque<LogEntry> queue = new ArrayDeque<>();
+        // pid -> app for this device; used for entries read before their app was known
+        private final Map<Integer, String> pidMap = new ConcurrentHashMap<>();
+        // newest timestamp seen from this device
+        private long maxTime = Long.MIN_VALUE;
+        // when entries last arrived (or when source was created)
+        private long lastInputMs = System.currentTimeMillis();
+
+        Source(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return true if an entry from another device logged at timestamp can be released without waiting for this one
+         */
+        boolean isReady(long timestamp, long nowMs) {
+            // anything this device sends later will be ordered against what's waiting
+            if (!queue.isEmpty()) return true;
+            // device has already logged past this time
+            if (timestamp <= maxTime) return true;
+            long waitMs = maxTime == Long.MIN_VALUE ? START_MS : REORDER_MS;
+            return nowMs - lastInputMs >= waitMs;
+        }
+
+        @Override
+        public void handleLogEntries(List<LogEntry> logEntryList) {
+            if (logEntryList.isEmpty()) return;
+            boolean wasEmpty = queue.isEmpty();
+            for (LogEntry logEntry : logEntryList) {
+                logEntry.device = name;
+                // pids are only unique per device so app is resolved here instead of by the table model
+                if (logEntry.app == null) logEntry.app = pidMap.get(logEntry.pid);
+                if (logEntry.timestamp > maxTime) maxTime = logEntry.timestamp;
+                queue.add(logEntry);
+            }
+            numPending += logEntryList.size();
+            if (wasEmpty) heap.add(this);
+            lastInputMs = System.currentTimeMillis();
+            release(false);
+        }
+
+        @Override
+        public void handleProcessMap(Map<Integer, String> processMap) {
+            // NOTE: called from a background thread
+            pidMap.putAll(processMap);
+            // entries already released get their app from the listener
+            listener.handleProcessMap(name, processMap);
+        }
+    }
+
+    public interface MergedLogListener extends LogBuffer.LogBufferListener {
+        /**
+         * called from a background thread with processes (PID -> app) found on device since last call
+         *
+         * @param device device name (see LogEntry.device)
+         */
+        void handleProcessMap(String device, Map<Integer, String> processMap);
+    }
+
+    /**
+     * @param listener gets merged entries (on the EDT) and processes found on each device
+     */
+    public LogMerger(MergedLogListener listener) {
+        this.listener = listener;
+        timer = new javax.swing.Timer(FLUSH_MS, e -> {
+            // release entries that were waiting on a device that's gone quiet
+            if (numPending > 0) release(false);
+        });
+        timer.start();
+    }
+
+    /**
+     * @return listener to pass to {@link DeviceManager#startLogging} for this device
+     */
+    public DeviceManager.DeviceLogListener getListener(Device device) {
+        return sourceMap.computeIfAbsent(device.serial, serial -> new Source(device.getDisplayName()));
+    }
+
+    /**
+     * release any waiting entries and stop timer
+     */
+    public void stop() {
+        log.trace("stop: {}", this);
+        release(true);
+        timer.stop();
+    }
+
+    /**
+     * @param isFlush true to release all waiting entries
+     */
+    private void release(boolean isFlush) {
+        List<LogEntry> resultList = new ArrayList<>();
+        long nowMs = System.currentTimeMillis();
+        while (!heap.isEmpty()) {
+            Source source = heap.peek();
+            LogEntry logEntry = source.queue.peekFirst();
+            boolean isReady = isFlush || numPending > MAX_PENDING || isReady(source, logEntry.timestamp, nowMs);
+            if (!isReady) break;
+
+            heap.poll();
+            source.queue.pollFirst();
+            numPending--;
+            resultList.add(logEntry);
+            if (!source.queue.isEmpty()) heap.add(source);
+        }
+        if (resultList.isEmpty()) return;
+        listener.handleLogEntries(resultList);
+    }
+
+    /**
+     * @return true if every device other than source is ready for an entry logged at timestamp
+     */
+    private boolean isReady(Source source, long timestamp, long nowMs) {
+        for (Source other : sourceMap.values()) {
+            if (other != source && !other.isReady(timestamp, nowMs)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "devices:" + sourceMap.size() + ", pending:" + numPending;
+    }
+}
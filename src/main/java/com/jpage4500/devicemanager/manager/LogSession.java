@@ -0,0 +1,247 @@
+package com.jpage4500.devicemanager.manager;
+
+import com.jpage4500.devicemanager.data.Device;
+import com.jpage4500.devicemanager.data.LogEntry;
+import com.jpage4500.devicemanager.data.LogcatBinaryDecoder;
+import com.jpage4500.devicemanager.data.LogcatParser;
+import com.jpage4500.devicemanager.utils.PreferenceUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * logcat stream for a single device
+ * - reads entries on its own thread and hands them to the EDT through a {@link LogBuffer}
+ * - resolves app names as entries are read (see {@link PidResolver})
+ * - resumes from a {@link LogCursor}; device only sends entries logged since then ('logcat -T')
+ * - stop() closes the logcat stream so a reader blocked on a quiet device exits right away
+ */
+public class LogSession {
+    private static final Logger log = LoggerFactory.getLogger(LogSession.class);
+
+    // how often PIDs seen for the first time are looked up
+    private static final long PID_LOOKUP_MS = 500;
+    // '-T' time for text logs; same (device local) time zone that the parser assumes
+    private static final DateTimeFormatter RESUME_FORMAT = DateTimeFormatter.ofPattern("MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final Device device;
+    // updated as entries are read
+    private final LogCursor cursor;
+    // position when session started; used to skip entries that were already read
+    private final LogCursor resumeCursor;
+    private final DeviceManager.DeviceLogListener listener;
+    // logcat filter args (see LogcatFilterSpec); empty for none
+    private final List<String> filterArgs;
+    private final LogBuffer buffer;
+    private final PidResolver pidResolver;
+
+    private volatile boolean isRunning = true;
+    // current logcat stream; closed by stop()
+    private volatile InputStream inputStream;
+    private ScheduledFuture<?> processFuture;
+
+    /**
+     * source of parsed log entries
+     */
+    private interface LogReader {
+        /**
+         * @return next entry or null at end of stream
+         */
+        LogEntry read() throws IOException;
+    }
+
+    /**
+     * @param cursor     position to resume from; updated as entries are read
+     * @param filterArgs logcat filter args (ie: "*:W"); empty for none
+     */
+    LogSession(Device device, LogCursor cursor, List<String> filterArgs, DeviceManager.DeviceLogListener listener) {
+        this.device = device;
+        this.cursor = cursor;
+        this.resumeCursor = cursor.resume();
+        this.filterArgs = filterArgs;
+        this.listener = listener;
+        LogBuffer.OverflowPolicy policy = LogBuffer.getOverflowPolicy(PreferenceUtils.getPreference(PreferenceUtils.Pref.PREF_LOG_OVERFLOW_POLICY));
+        buffer = new LogBuffer(LogBuffer.DEFAULT_CAPACITY, policy, listener::handleLogEntries);
+        pidResolver = new PidResolver(device);
+    }
+
+    /**
+     * @param readerExecutor runs the (long-running) reader; should not be a small fixed pool
+     */
+    void start(ExecutorService readerExecutor, ScheduledExecutorService scheduledExecutor) {
+        readerExecutor.submit(this::run);
+        // look up apps of new PIDs
+        processFuture = scheduledExecutor.scheduleWithFixedDelay(this::lookupPids, PID_LOOKUP_MS, PID_LOOKUP_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * stop reading; safe to call more than once and from any thread
+     */
+    public void stop() {
+        if (!isRunning) return;
+        log.debug("stop: {}, {}", device.serial, buffer);
+        isRunning = false;
+        buffer.stop();
+        if (processFuture != null) processFuture.cancel(false);
+        closeStream();
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public LogBuffer.Stats getStats() {
+        return buffer.getStats();
+    }
+
+    private void run() {
+        // NOTE: runs on a shared pool thread; name is restored when done
+        Thread thread = Thread.currentThread();
+        String threadName = thread.getName();
+        thread.setName("logcat-" + device.serial);
+        log.debug("run: {}, {}, filter:{}", device.serial, resumeCursor, filterArgs);
+        try {
+            // fetch running apps before reading so most entries get an app name right away
+            Map<Integer, String> pidMap = pidResolver.seed();
+            if (!isRunning) return;
+            if (!pidMap.isEmpty()) listener.handleProcessMap(pidMap);
+
+            boolean useBinary = PreferenceUtils.getPreference(PreferenceUtils.PrefBoolean.PREF_BINARY_LOGCAT, false);
+            if (useBinary) {
+                // binary entries are decoded as-is (no text formatting on device or date parsing here)
+                boolean isStarted = readLogs(true);
+                if (isStarted || !isRunning) return;
+                // older devices don't support 'exec:' or 'logcat -B'
+                log.debug("run: binary logcat not supported; using text");
+            }
+            readLogs(false);
+        } finally {
+            // deliver anything still waiting
+            stop();
+            thread.setName(threadName);
+        }
+    }
+
+    /**
+     * read logs using resume and filter args; falls back to no args if device doesn't support them
+     *
+     * @return true if at least 1 entry was read
+     */
+    private boolean readLogs(boolean isBinary) {
+        List<String> argList = new ArrayList<>();
+        // us timestamps so entries logged in the same ms can be told apart when resuming
+        if (!isBinary) argList.addAll(List.of("-v", "usec"));
+        Long resumeTime = resumeCursor.getTime();
+        if (resumeTime != null) {
+            // start 1ms early so entries logged at the same time as the last one read aren't missed
+            argList.add("-T");
+            argList.add(getResumeTime(resumeTime - 1, isBinary));
+        }
+        argList.addAll(filterArgs);
+
+        if (readLogs(isBinary, argList)) return true;
+        if (!isRunning) return false;
+        // stream ended without any entries; older devices don't support some args (ie: -T, -v usec, --pid, -e)
+        log.debug("readLogs: {}, args not supported: {}", device.serial, argList);
+        return readLogs(isBinary, List.of());
+    }
+
+    /**
+     * @return time for 'logcat -T'
+     * - binary entries use epoch time ("sec.ms")
+     * - text entries use device local time ("MM-dd HH:mm:ss.ms"); parsed times assume device and host are in the same time zone
+     */
+    private static String getResumeTime(long timeMs, boolean isBinary) {
+        if (isBinary) return String.format("%d.%03d", Math.floorDiv(timeMs, 1000), Math.floorMod(timeMs, 1000));
+        return RESUME_FORMAT.format(Instant.ofEpochMilli(timeMs));
+    }
+
+    /**
+     * read logs from device until session is stopped or stream ends
+     *
+     * @param isBinary true to read binary entries ('logcat -B'); false to parse text ('logcat -v threadtime')
+     * @return true if at least 1 entry was read
+     */
+    private boolean readLogs(boolean isBinary, List<String> argList) {
+        boolean isStarted = false;
+        try {
+            LogReader reader;
+            List<String> args = new ArrayList<>();
+            if (isBinary) {
+                args.add("-B");
+                args.addAll(argList);
+                // NOTE: exec: returns raw bytes; shell: may convert line endings
+                inputStream = device.jadbDevice.execute("logcat", args.toArray(new String[0]));
+                LogcatBinaryDecoder decoder = new LogcatBinaryDecoder(inputStream);
+                reader = decoder::read;
+            } else {
+                args.add("-v");
+                args.add("threadtime");
+                args.addAll(argList);
+                inputStream = device.jadbDevice.executeShell("logcat", args.toArray(new String[0]));
+                BufferedReader input = new BufferedReader(new InputStreamReader(inputStream));
+                LogcatParser parser = new LogcatParser(Calendar.getInstance().get(Calendar.YEAR));
+                reader = () -> {
+                    String line;
+                    while ((line = input.readLine()) != null) {
+                        LogEntry logEntry = parser.parse(line);
+                        if (logEntry != null) return logEntry;
+                    }
+                    return null;
+                };
+            }
+            // stopped while connecting
+            if (!isRunning) return isStarted;
+
+            LogEntry logEntry;
+            while ((logEntry = reader.read()) != null) {
+                isStarted = true;
+                // already read (or too old); also checked when '-T' is used since it starts a bit early
+                if (!resumeCursor.isNew(logEntry)) continue;
+
+                logEntry.app = pidResolver.getApp(logEntry.pid);
+                // buffer is stopped when session is stopped
+                if (!buffer.offer(logEntry)) break;
+                cursor.add(logEntry);
+            }
+        } catch (Exception e) {
+            if (isRunning) log.error("readLogs: {}, binary:{}, {}", device.serial, isBinary, e.getMessage());
+            else log.trace("readLogs: {}, stopped: {}", device.serial, e.getMessage());
+        } finally {
+            closeStream();
+        }
+        return isStarted;
+    }
+
+    private void closeStream() {
+        InputStream stream = inputStream;
+        if (stream == null) return;
+        inputStream = null;
+        try {
+            stream.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void lookupPids() {
+        if (!isRunning) return;
+        Map<Integer, String> pidMap = pidResolver.lookup();
+        // entries added before their app was known are updated by the table model
+        if (isRunning && !pidMap.isEmpty()) listener.handleProcessMap(pidMap);
+    }
+}
@@ -0,0 +1,100 @@
+package com.jpage4500.devicemanager.manager;
+
+import com.jpage4500.devicemanager.data.Device;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PID -> app name for a single device
+ * - seeded once with all running processes
+ * - PIDs not seen before are queued by the log reader and looked up together ('ps -p PID,PID..')
+ * - PIDs that weren't found (process already exited) are remembered so they aren't looked up again
+ * <p>
+ * NOTE: a PID reused by a new process keeps the previous app name
+ */
+public class PidResolver {
+    private static final Logger log = LoggerFactory.getLogger(PidResolver.class);
+
+    // max PIDs per 'ps -p' lookup
+    private static final int MAX_LOOKUP = 100;
+    // max PIDs remembered as not found
+    private static final int MAX_MISSING = 2000;
+
+    private final Device device;
+    private final Map<Integer, String> pidMap = new ConcurrentHashMap<>();
+    // PIDs waiting to be looked up
+    private final Set<Integer> pendingSet = ConcurrentHashMap.newKeySet();
+    // PIDs that weren't found; oldest are removed first
+    private final Map<Integer, Boolean> missingMap = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+            return size() > MAX_MISSING;
+        }
+    });
+
+    public PidResolver(Device device) {
+        this.device = device;
+    }
+
+    /**
+     * fetch all running processes
+     *
+     * @return processes found
+     */
+    public Map<Integer, String> seed() {
+        Map<Integer, String> resultMap = DeviceManager.getInstance().getProcessMap(device, null);
+        if (resultMap == null) return Collections.emptyMap();
+        pidMap.putAll(resultMap);
+        log.trace("seed: {}, processes:{}", device.serial, resultMap.size());
+        return resultMap;
+    }
+
+    /**
+     * @return app for PID or null if not known (yet); unknown PIDs are queued for the next lookup()
+     * NOTE: called by log reader for every entry
+     */
+    public String getApp(int pid) {
+        String app = pidMap.get(pid);
+        if (app == null && pid > 0 && !missingMap.containsKey(pid)) pendingSet.add(pid);
+        return app;
+    }
+
+    /**
+     * look up queued PIDs
+     *
+     * @return processes found (empty if none)
+     */
+    public Map<Integer, String> lookup() {
+        if (pendingSet.isEmpty()) return Collections.emptyMap();
+        List<Integer> pidList = new ArrayList<>();
+        for (Integer pid : pendingSet) {
+            pendingSet.remove(pid);
+            // added by another lookup or already missing
+            if (pidMap.containsKey(pid) || missingMap.containsKey(pid)) continue;
+            pidList.add(pid);
+            if (pidList.size() == MAX_LOOKUP) break;
+        }
+        if (pidList.isEmpty()) return Collections.emptyMap();
+
+        Map<Integer, String> resultMap = DeviceManager.getInstance().getProcessMap(device, pidList);
+        if (resultMap == null) {
+            // try again next time
+            pendingSet.addAll(pidList);
+            return Collections.emptyMap();
+        }
+        pidMap.putAll(resultMap);
+        for (Integer pid : pidList) {
+            if (!resultMap.containsKey(pid)) missingMap.put(pid, Boolean.TRUE);
+        }
+        log.trace("lookup: {}, pids:{}, found:{}", device.serial, pidList.size(), resultMap.size());
+        return resultMap;
+    }
+}
@@ -1,6 +1,7 @@
 package com.jpage4500.devicemanager.table;
 
 import com.jpage4500.devicemanager.data.Device;
+import com.jpage4500.devicemanager.data.DeviceChange;
 import com.jpage4500.devicemanager.utils.FileUtils;
 import com.jpage4500.devicemanager.utils.TextUtils;
 import org.slf4j.Logger;
@@ -8,12 +9,17 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DeviceTableModel extends AbstractTableModel {
     private static final Logger log = LoggerFactory.getLogger(DeviceTableModel.class);
 
     private final List<Device> deviceList;
+    // serial -> index in deviceList
+    private final Map<String, Integer> rowMap;
     private final List<String> appList;
     private Columns[] visibleColumns;
 
@@ -42,17 +48,11 @@ public class DeviceTableModel extends AbstractTableModel {
 
     public DeviceTableModel() {
         deviceList = new ArrayList<>();
+        rowMap = new HashMap<>();
         appList = new ArrayList<>();
         setHiddenColumns(null);
     }
 
-    public void setDeviceList(List<Device> deviceList) {
-        if (this.deviceList.equals(deviceList)) return;
-        this.deviceList.clear();
-        this.deviceList.addAll(deviceList);
-        fireTableDataChanged();
-    }
-
     public void setHiddenColumns(List<String> hiddenColumns) {
         Columns[] columns = Columns.values();
         int numColumns = columns.length;
@@ -92,14 +92,34 @@ public class DeviceTableModel extends AbstractTableModel {
         return null;
     }
 
+    /**
+     * @return true if any of the changed fields are displayed in given column
+     */
+    public boolean isColumnAffected(int colIndex, Set<DeviceChange.Field> fieldSet) {
+        // online/offline state affects sorting of every column
+        if (fieldSet.contains(DeviceChange.Field.STATE)) return true;
+        Columns colType = getColumnType(colIndex);
+        if (colType == null) return fieldSet.contains(DeviceChange.Field.APP_VERSIONS);
+        return switch (colType) {
+            case SERIAL -> false;
+            case NAME -> fieldSet.contains(DeviceChange.Field.NAME) || fieldSet.contains(DeviceChange.Field.PROPERTIES);
+            case MODEL -> fieldSet.contains(DeviceChange.Field.PROPERTIES);
+            case PHONE -> fieldSet.contains(DeviceChange.Field.PHONE);
+            case IMEI -> fieldSet.contains(DeviceChange.Field.IMEI);
+            case BATTERY -> fieldSet.contains(DeviceChange.Field.BATTERY);
+            case FREE -> fieldSet.contains(DeviceChange.Field.FREE_SPACE);
+            case CUSTOM1, CUSTOM2 -> fieldSet.contains(DeviceChange.Field.CUSTOM_PROPERTIES);
+        };
+    }
+
     public void updateDevice(Device device) {
         int row = getRowForDevice(device);
         if (row >= 0) {
             fireTableRowsUpdated(row, row);
         } else {
-            // TODO: make sure this logic works
             deviceList.add(device);
             int lastRow = deviceList.size() - 1;
+            rowMap.put(device.serial, lastRow);
             fireTableRowsInserted(lastRow, lastRow);
         }
     }
@@ -108,19 +128,19 @@ public class DeviceTableModel extends AbstractTableModel {
         int row = getRowForDevice(device);
         if (row >= 0) {
             deviceList.remove(row);
+            rowMap.remove(device.serial);
+            // rows after this one moved up
+            for (int i = row; i < deviceList.size(); i++) {
+                rowMap.put(deviceList.get(i).serial, i);
+            }
             fireTableRowsDeleted(row, row);
         }
     }
 
     public int getRowForDevice(Device device) {
-        if (device == null) return -1;
-        for (int row = 0; row < deviceList.size(); row++) {
-            Device d = deviceList.get(row);
-            if (TextUtils.equals(d.serial, device.serial)) {
-                return row;
-            }
-        }
-        return -1;
+        if (device == null || device.serial == null) return -1;
+        Integer row = rowMap.get(device.serial);
+        return row != null ? row : -1;
     }
 
     public void setAppList(List<String> appList) {
@@ -0,0 +1,443 @@
+package com.jpage4500.devicemanager.table;
+
+import com.jpage4500.devicemanager.data.LogEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * disk-backed log storage; keeps hours of logs without holding them on the heap
+ * - rows are appended to memory-mapped segment files (64MB each)
+ * - each segment has a sparse index (time + offset of every 64th row)
+ * - rows are decoded in blocks of 64 as they're needed; only the most recent blocks are kept on-heap
+ * - oldest segments are deleted once the max size (see {@link HistorySize}) is reached
+ * - segments are unmapped before they're deleted (Windows can't delete a file that's still mapped)
+ * <p>
+ * record format: [int length][long timestamp][int pid][int tid][byte level][int tagId][int appId][int deviceId][message (UTF-8)]
+ * NOTE: not thread safe; reading a segment after trim(), clear() or close() removed it would crash the JVM (caller must
+ * not read while storage is being changed)
+ */
+public class LogFileStore implements LogStorage {
+    private static final Logger log = LoggerFactory.getLogger(LogFileStore.class);
+
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    // rows per index entry and per decoded block (power of 2)
+    private static final int BLOCK_ROWS = 64;
+    // max decoded blocks kept on-heap
+    private static final int MAX_CACHED_BLOCKS = 64;
+
+    private static final int HEADER_SIZE = 4 + 8 + 4 + 4 + 1 + 4 + 4 + 4;
+    private static final int APP_ID_OFFSET = 4 + 8 + 4 + 4 + 1 + 4;
+    private static final int DEVICE_ID_OFFSET = APP_ID_OFFSET + 4;
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024;
+
+    /**
+     * max disk space used by each log window
+     */
+    public enum HistorySize {
+        MB_256(256),
+        GB_1(1024),
+        GB_4(4096),
+        ;
+        final int sizeMb;
+
+        HistorySize(int sizeMb) {
+            this.sizeMb = sizeMb;
+        }
+
+        @Override
+        public String toString() {
+            return sizeMb < 1024 ? sizeMb + " MB" : sizeMb / 1024 + " GB";
+        }
+    }
+
+    private final File folder;
+    private final int maxSegments;
+    private final List<Segment> segmentList = new ArrayList<>();
+    private final StringDictionary dictionary = new StringDictionary();
+    private int segmentCount;
+
+    // global row numbers; row 0 in the table is firstRow
+    private long firstRow;
+    private long nextRow;
+
+    // decoded blocks by global row of first entry; access-order for LRU
+    private final Map<Long, Block> blockMap = new LinkedHashMap<>(MAX_CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Block> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+
+    private static class Segment {
+        final File file;
+        final MappedByteBuffer buffer;
+        final long firstRow;
+        int rowCount;
+        int writePos;
+        // sparse index: timestamp and offset of every BLOCK_ROWS row
+        long[] indexTimes = new long[256];
+        int[] indexOffsets = new int[256];
+
+        Segment(File file, long firstRow) throws IOException {
+            this.file = file;
+            this.firstRow = firstRow;
+            // mapping stays valid after the file is closed
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            }
+        }
+
+        void close() {
+            // NOTE: file can't be deleted on Windows until it's unmapped
+            unmap(buffer);
+            if (!file.delete()) file.deleteOnExit();
+        }
+    }
+
+    private static class Block {
+        final LogEntry[] entries;
+        final int[] offsets;
+
+        Block(int count) {
+            entries = new LogEntry[count];
+            offsets = new int[count];
+        }
+    }
+
+    /**
+     * @param name used to name the folder holding segment files (ie: device serial)
+     */
+    public LogFileStore(String name, HistorySize historySize) throws IOException {
+        maxSegments = Math.max(2, historySize.sizeMb / (SEGMENT_SIZE / 1024 / 1024));
+        File baseFolder = new File(System.getProperty("java.io.tmpdir"), "device-manager-logs");
+        String safeName = name.replaceAll("[^a-zA-Z0-9._-]", "_");
+        folder = new File(baseFolder, safeName + "-" + System.currentTimeMillis());
+        if (!folder.mkdirs()) throw new IOException("unable to create " + folder.getAbsolutePath());
+        folder.deleteOnExit();
+        log.debug("LogFileStore: {}", folder.getAbsolutePath());
+    }
+
+    @Override
+    public int size() {
+        return (int) (nextRow - firstRow);
+    }
+
+    @Override
+    public int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int trim(int numToAdd) {
+        int numRemove = 0;
+        while (segmentList.size() > maxSegments) {
+            Segment segment = segmentList.remove(0);
+            numRemove += segment.rowCount;
+            segment.close();
+        }
+        if (numRemove > 0) {
+            firstRow += numRemove;
+            blockMap.keySet().removeIf(row -> row < firstRow);
+        }
+        return numRemove;
+    }
+
+    @Override
+    public boolean add(LogEntry entry) {
+        String message = entry.getMessage();
+        byte[] data = message != null ? message.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int len = Math.min(data.length, MAX_MESSAGE_SIZE);
+        int recordSize = HEADER_SIZE + len;
+
+        Segment segment = getWriteSegment(recordSize);
+        if (segment == null) return false;
+        int pos = segment.writePos;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(pos, recordSize);
+        buffer.putLong(pos + 4, entry.timestamp);
+        buffer.putInt(pos + 12, entry.pid);
+        buffer.putInt(pos + 16, entry.tid);
+        buffer.put(pos + 20, entry.level != null && !entry.level.isEmpty() ? (byte) entry.level.charAt(0) : 0);
+        buffer.putInt(pos + 21, dictionary.toId(entry.tag));
+        buffer.putInt(pos + APP_ID_OFFSET, dictionary.toId(entry.app));
+        buffer.putInt(pos + DEVICE_ID_OFFSET, dictionary.toId(entry.device));
+        buffer.put(pos + HEADER_SIZE, data, 0, len);
+
+        if ((segment.rowCount & (BLOCK_ROWS - 1)) == 0) {
+            int index = segment.rowCount / BLOCK_ROWS;
+            if (index == segment.indexOffsets.length) {
+                segment.indexTimes = Arrays.copyOf(segment.indexTimes, index * 2);
+                segment.indexOffsets = Arrays.copyOf(segment.indexOffsets, index * 2);
+            }
+            segment.indexTimes[index] = entry.timestamp;
+            segment.indexOffsets[index] = pos;
+        }
+        segment.writePos += recordSize;
+        segment.rowCount++;
+        nextRow++;
+        return true;
+    }
+
+    /**
+     * @return segment with room for recordSize bytes; a new segment is started when current one is full
+     */
+    private Segment getWriteSegment(int recordSize) {
+        Segment segment = segmentList.isEmpty() ? null : segmentList.get(segmentList.size() - 1);
+        if (segment != null && segment.writePos + recordSize <= SEGMENT_SIZE) return segment;
+        try {
+            File file = new File(folder, String.format("segment-%05d.log", segmentCount++));
+            segment = new Segment(file, nextRow);
+            segmentList.add(segment);
+            return segment;
+        } catch (IOException e) {
+            log.error("getWriteSegment: Exception: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segmentList) {
+            segment.close();
+        }
+        segmentList.clear();
+        blockMap.clear();
+        firstRow = nextRow;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (!folder.delete()) log.debug("close: unable to delete {}", folder.getAbsolutePath());
+    }
+
+    /**
+     * uses the sparse index so only 1 block per segment is decoded
+     */
+    @Override
+    public int findRow(long timestamp) {
+        for (Segment segment : segmentList) {
+            int numIndex = (segment.rowCount + BLOCK_ROWS - 1) / BLOCK_ROWS;
+            if (numIndex == 0) continue;
+            // last block starting before timestamp
+            int index = Arrays.binarySearch(segment.indexTimes, 0, numIndex, timestamp);
+            if (index < 0) index = -index - 2;
+            else while (index > 0 && segment.indexTimes[index - 1] == timestamp) index--;
+            if (index < 0) return (int) (segment.firstRow - firstRow);
+            long blockRow = segment.firstRow + (long) index * BLOCK_ROWS;
+            Block block = getBlock(segment, blockRow);
+            for (int i = 0; i < block.entries.length; i++) {
+                if (block.entries[i].timestamp >= timestamp) return (int) (blockRow + i - firstRow);
+            }
+            if (blockRow + block.entries.length < segment.firstRow + segment.rowCount) {
+                // next block starts after timestamp
+                return (int) (blockRow + block.entries.length - firstRow);
+            }
+        }
+        return size();
+    }
+
+    private Segment findSegment(long globalRow) {
+        int low = 0;
+        int high = segmentList.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segmentList.get(mid).firstRow <= globalRow) low = mid;
+            else high = mid - 1;
+        }
+        return segmentList.get(low);
+    }
+
+    /**
+     * @return decoded block containing blockRow; block at the end of the current segment may still be growing
+     */
+    private Block getBlock(Segment segment, long blockRow) {
+        int rowInSegment = (int) (blockRow - segment.firstRow);
+        int count = Math.min(BLOCK_ROWS, segment.rowCount - rowInSegment);
+        Block block = blockMap.get(blockRow);
+        if (block != null && block.entries.length == count) return block;
+
+        block = new Block(count);
+        MappedByteBuffer buffer = segment.buffer;
+        int pos = segment.indexOffsets[rowInSegment / BLOCK_ROWS];
+        for (int i = 0; i < count; i++) {
+            block.entries[i] = decode(buffer, pos);
+            block.offsets[i] = pos;
+            pos += buffer.getInt(pos);
+        }
+        blockMap.put(blockRow, block);
+        return block;
+    }
+
+    /**
+     * @return entry for record at pos (absolute reads only; safe for multiple threads)
+     */
+    private LogEntry decode(MappedByteBuffer buffer, int pos) {
+        int recordSize = buffer.getInt(pos);
+        LogEntry entry = new LogEntry();
+        entry.timestamp = buffer.getLong(pos + 4);
+        entry.pid = buffer.getInt(pos + 12);
+        entry.tid = buffer.getInt(pos + 16);
+        byte level = buffer.get(pos + 20);
+        entry.level = level == 0 ? null : LogStore.getLevelString(level);
+        entry.tag = dictionary.fromId(buffer.getInt(pos + 21));
+        entry.app = dictionary.fromId(buffer.getInt(pos + APP_ID_OFFSET));
+        entry.device = dictionary.fromId(buffer.getInt(pos + DEVICE_ID_OFFSET));
+        byte[] data = new byte[recordSize - HEADER_SIZE];
+        buffer.get(pos + HEADER_SIZE, data);
+        entry.setMessage(new String(data, StandardCharsets.UTF_8));
+        return entry;
+    }
+
+    /**
+     * read records in order without using (or filling) the block cache
+     */
+    @Override
+    public void read(int start, int end, RowVisitor visitor) {
+        long globalRow = firstRow + start;
+        long globalEnd = firstRow + end;
+        while (globalRow < globalEnd) {
+            Segment segment = findSegment(globalRow);
+            MappedByteBuffer buffer = segment.buffer;
+            int rowInSegment = (int) (globalRow - segment.firstRow);
+            int pos = segment.indexOffsets[rowInSegment / BLOCK_ROWS];
+            // skip to first row
+            for (int i = rowInSegment & ~(BLOCK_ROWS - 1); i < rowInSegment; i++) pos += buffer.getInt(pos);
+            for (; rowInSegment < segment.rowCount && globalRow < globalEnd; rowInSegment++, globalRow++) {
+                visitor.visit((int) (globalRow - firstRow), decode(buffer, pos));
+                pos += buffer.getInt(pos);
+            }
+        }
+    }
+
+    private LogEntry getEntry(int row) {
+        long globalRow = firstRow + row;
+        Segment segment = findSegment(globalRow);
+        long blockRow = globalRow - ((globalRow - segment.firstRow) & (BLOCK_ROWS - 1));
+        return getBlock(segment, blockRow).entries[(int) (globalRow - blockRow)];
+    }
+
+    @Override
+    public long getTimestamp(int row) {
+        return getEntry(row).timestamp;
+    }
+
+    @Override
+    public int getPid(int row) {
+        return getEntry(row).pid;
+    }
+
+    @Override
+    public int getTid(int row) {
+        return getEntry(row).tid;
+    }
+
+    @Override
+    public String getLevel(int row) {
+        return getEntry(row).level;
+    }
+
+    @Override
+    public String getTag(int row) {
+        return getEntry(row).tag;
+    }
+
+    @Override
+    public String getApp(int row) {
+        return getEntry(row).app;
+    }
+
+    @Override
+    public void setApp(int row, String app) {
+        long globalRow = firstRow + row;
+        Segment segment = findSegment(globalRow);
+        long blockRow = globalRow - ((globalRow - segment.firstRow) & (BLOCK_ROWS - 1));
+        Block block = getBlock(segment, blockRow);
+        int i = (int) (globalRow - blockRow);
+        block.entries[i].app = app;
+        // also save to file so it's there if block is decoded again
+        segment.buffer.putInt(block.offsets[i] + APP_ID_OFFSET, dictionary.toId(app));
+    }
+
+    @Override
+    public String getDevice(int row) {
+        return getEntry(row).device;
+    }
+
+    @Override
+    public String getMessage(int row) {
+        return getEntry(row).getMessage();
+    }
+
+    @Override
+    public LogEntry get(int row) {
+        LogEntry cached = getEntry(row);
+        // return a copy so callers can't change cached values
+        LogEntry entry = new LogEntry();
+        entry.timestamp = cached.timestamp;
+        entry.pid = cached.pid;
+        entry.tid = cached.tid;
+        entry.level = cached.level;
+        entry.tag = cached.tag;
+        entry.app = cached.app;
+        entry.device = cached.device;
+        entry.setMessage(cached.getMessage());
+        return entry;
+    }
+
+    public static HistorySize getHistorySize(String value) {
+        if (value != null) {
+            try {
+                return HistorySize.valueOf(value);
+            } catch (IllegalArgumentException e) {
+                log.debug("getHistorySize: invalid: {}", value);
+            }
+        }
+        return HistorySize.GB_1;
+    }
+
+    private static Object unsafe;
+    private static Method invokeCleaner;
+
+    /**
+     * release mapping now instead of when buffer is garbage collected
+     * NOTE: buffer can't be used after this
+     */
+    private static synchronized void unmap(MappedByteBuffer buffer) {
+        try {
+            if (invokeCleaner == null) {
+                // sun.misc.Unsafe.invokeCleaner() (jdk.unsupported); no public API to unmap a buffer
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            }
+            invokeCleaner.invoke(unsafe, buffer);
+        } catch (Exception e) {
+            log.debug("unmap: Exception: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        long bytes = 0;
+        for (Segment segment : segmentList) bytes += segment.writePos;
+        return "rows:" + size() + ", segments:" + segmentList.size() + ", bytes:" + bytes + ", blocks:" + blockMap.size();
+    }
+}
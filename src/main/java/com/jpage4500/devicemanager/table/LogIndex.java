@@ -0,0 +1,312 @@
+package com.jpage4500.devicemanager.table;
+
+import com.jpage4500.devicemanager.data.LogEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+/**
+ * inverted index of log rows: token -> sorted list of row ids
+ * - tokens are lowercase runs of letters/digits from the tag, message and app
+ * - rows are indexed as they're appended; trimmed rows are removed lazily
+ * - a search matches rows containing a token starting with EACH search token (ie: "wifi conn" matches "WifiHAL: connected")
+ * - rows added before their app was known are kept in a separate list and their app is checked when searching
+ * <p>
+ * NOTE: not thread safe
+ */
+public class LogIndex {
+    // longer tokens are truncated (prefix search still works)
+    private static final int MAX_TOKEN_LENGTH = 32;
+
+    private final Map<String, PostingList> tokenMap = new HashMap<>();
+    // sorted tokens for prefix lookups
+    private final NavigableSet<String> tokenSet = new TreeSet<>();
+
+    // row id of model row 0
+    private int firstRow;
+    // row id of next row added
+    private int nextRow;
+    // rows removed since posting lists were last compacted
+    private int numRemoved;
+    // rows that didn't have an app when added
+    private final PostingList noAppList = new PostingList();
+
+    /**
+     * sorted row ids for a single token
+     */
+    private static class PostingList {
+        int[] rows = new int[4];
+        int start;
+        int end;
+
+        void add(int row) {
+            // same token more than once in a row
+            if (end > start && rows[end - 1] == row) return;
+            if (end == rows.length) rows = Arrays.copyOf(rows, rows.length * 2);
+            rows[end++] = row;
+        }
+
+        /**
+         * drop rows before firstRow and shift ids down by offset
+         */
+        void compact(int firstRow, int offset) {
+            int pos = Arrays.binarySearch(rows, start, end, firstRow);
+            if (pos < 0) pos = -pos - 1;
+            int size = end - pos;
+            for (int i = 0; i < size; i++) rows[i] = rows[pos + i] - offset;
+            start = 0;
+            end = size;
+            if (rows.length > 16 && size < rows.length / 4) rows = Arrays.copyOf(rows, Math.max(size * 2, 4));
+        }
+    }
+
+    /**
+     * search terms
+     */
+    public static class Query {
+        final String[] tokens;
+
+        Query(String[] tokens) {
+            this.tokens = tokens;
+        }
+
+        /**
+         * @return true if log entry contains a token starting with each search token (same result as a search of the index)
+         */
+        public boolean isMatch(LogEntry logEntry) {
+            for (String token : tokens) {
+                if (!containsPrefix(logEntry.tag, token) && !containsPrefix(logEntry.getMessage(), token)
+                        && !containsPrefix(logEntry.app, token)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", tokens);
+        }
+    }
+
+    /**
+     * @return query for search text or null if text doesn't contain any tokens
+     */
+    public static Query parse(String text) {
+        List<String> tokenList = new ArrayList<>();
+        tokenize(text, tokenList);
+        if (tokenList.isEmpty()) return null;
+        return new Query(tokenList.toArray(new String[0]));
+    }
+
+    /**
+     * index log entry as the next row
+     */
+    public void add(LogEntry logEntry) {
+        int row = nextRow++;
+        List<String> tokenList = new ArrayList<>();
+        tokenize(logEntry.tag, tokenList);
+        tokenize(logEntry.getMessage(), tokenList);
+        if (logEntry.app != null) tokenize(logEntry.app, tokenList);
+        else noAppList.add(row);
+        for (String token : tokenList) {
+            PostingList list = tokenMap.get(token);
+            if (list == null) {
+                list = new PostingList();
+                tokenMap.put(token, list);
+                tokenSet.add(token);
+            }
+            list.add(row);
+        }
+    }
+
+    /**
+     * remove oldest rows
+     */
+    public void removeFirst(int count) {
+        count = Math.min(count, nextRow - firstRow);
+        firstRow += count;
+        numRemoved += count;
+        // compact once a good portion of postings are stale
+        if (numRemoved > 10000 && numRemoved > (nextRow - firstRow) / 4) compact();
+    }
+
+    public void clear() {
+        tokenMap.clear();
+        tokenSet.clear();
+        noAppList.start = 0;
+        noAppList.end = 0;
+        firstRow = 0;
+        nextRow = 0;
+        numRemoved = 0;
+    }
+
+    /**
+     * remove trimmed rows from all posting lists and renumber rows so ids start at 0
+     */
+    private void compact() {
+        int offset = firstRow;
+        tokenMap.entrySet().removeIf(entry -> {
+            PostingList list = entry.getValue();
+            list.compact(firstRow, offset);
+            if (list.end == 0) {
+                tokenSet.remove(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+        noAppList.compact(firstRow, offset);
+        firstRow -= offset;
+        nextRow -= offset;
+        numRemoved = 0;
+    }
+
+    /**
+     * @param appLookup current app of a model row (null if not known); only used for rows added without an app
+     * @return model rows (ascending) matching query
+     */
+    public int[] search(Query query, IntFunction<String> appLookup) {
+        int[] result = null;
+        for (String token : query.tokens) {
+            int[] rows = union(getPrefixRows(token), getAppRows(token, appLookup));
+            result = result == null ? rows : intersect(result, rows);
+            if (result.length == 0) break;
+        }
+        if (result == null) return new int[0];
+        // convert row ids to model rows
+        for (int i = 0; i < result.length; i++) result[i] -= firstRow;
+        return result;
+    }
+
+    /**
+     * @return sorted row ids (>= firstRow) of all tokens starting with prefix
+     */
+    private int[] getPrefixRows(String prefix) {
+        if (prefix.length() > MAX_TOKEN_LENGTH) prefix = prefix.substring(0, MAX_TOKEN_LENGTH);
+        List<PostingList> matchList = new ArrayList<>();
+        int total = 0;
+        for (String token : tokenSet.subSet(prefix, true, prefix + Character.MAX_VALUE, false)) {
+            PostingList list = tokenMap.get(token);
+            matchList.add(list);
+            total += list.end - list.start;
+        }
+        if (matchList.size() == 1) {
+            PostingList list = matchList.get(0);
+            return trimRows(Arrays.copyOfRange(list.rows, list.start, list.end));
+        }
+        // union of all matching tokens
+        int[] rows = new int[total];
+        int pos = 0;
+        for (PostingList list : matchList) {
+            System.arraycopy(list.rows, list.start, rows, pos, list.end - list.start);
+            pos += list.end - list.start;
+        }
+        Arrays.sort(rows);
+        int size = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (size == 0 || rows[size - 1] != rows[i]) rows[size++] = rows[i];
+        }
+        return trimRows(Arrays.copyOf(rows, size));
+    }
+
+    /**
+     * @return sorted row ids (>= firstRow) added without an app whose app (now) contains a token starting with prefix
+     */
+    private int[] getAppRows(String prefix, IntFunction<String> appLookup) {
+        int[] rows = new int[noAppList.end - noAppList.start];
+        int size = 0;
+        for (int i = noAppList.start; i < noAppList.end; i++) {
+            int row = noAppList.rows[i];
+            if (row < firstRow) continue;
+            if (containsPrefix(appLookup.apply(row - firstRow), prefix)) rows[size++] = row;
+        }
+        return Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * @return rows with trimmed rows (< firstRow) removed
+     */
+    private int[] trimRows(int[] rows) {
+        int pos = Arrays.binarySearch(rows, firstRow);
+        if (pos < 0) pos = -pos - 1;
+        return pos == 0 ? rows : Arrays.copyOfRange(rows, pos, rows.length);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        if (b.length == 0) return a;
+        if (a.length == 0) return b;
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, size = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) result[size++] = a[i++];
+            else if (i == a.length || b[j] < a[i]) result[size++] = b[j++];
+            else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, size = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * split text into lowercase tokens of letters/digits
+     */
+    private static void tokenize(String text, List<String> tokenList) {
+        if (text == null) return;
+        int len = text.length();
+        int start = -1;
+        for (int i = 0; i <= len; i++) {
+            boolean isTokenChar = i < len && Character.isLetterOrDigit(text.charAt(i));
+            if (isTokenChar) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                int end = Math.min(i, start + MAX_TOKEN_LENGTH);
+                tokenList.add(text.substring(start, end).toLowerCase());
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * @return true if text contains a token starting with prefix (prefix is lowercase)
+     */
+    private static boolean containsPrefix(String text, String prefix) {
+        if (text == null) return false;
+        if (prefix.length() > MAX_TOKEN_LENGTH) prefix = prefix.substring(0, MAX_TOKEN_LENGTH);
+        int len = text.length();
+        int prefixLen = prefix.length();
+        for (int i = 0; i + prefixLen <= len; i++) {
+            // start of a token
+            if (i > 0 && Character.isLetterOrDigit(text.charAt(i - 1))) continue;
+            if (text.regionMatches(true, i, prefix, 0, prefixLen)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "tokens:" + tokenMap.size() + ", rows:" + (nextRow - firstRow);
+    }
+}
@@ -0,0 +1,76 @@
+package com.jpage4500.devicemanager.table;
+
+import com.jpage4500.devicemanager.data.LogEntry;
+
+/**
+ * storage for log rows used by {@link LogsTableModel}
+ * rows are numbered 0 (oldest) to size()-1 (newest)
+ */
+public interface LogStorage {
+    interface RowVisitor {
+        void visit(int row, LogEntry logEntry);
+    }
+
+    int size();
+
+    /**
+     * @return max number of rows that can be stored
+     */
+    int capacity();
+
+    /**
+     * remove oldest rows (if needed) to make room for numToAdd new rows
+     *
+     * @return number of rows removed from the start
+     */
+    int trim(int numToAdd);
+
+    /**
+     * @return false if entry couldn't be stored (ie: disk full); entries are only added in order so stop on failure
+     */
+    boolean add(LogEntry entry);
+
+    void clear();
+
+    long getTimestamp(int row);
+
+    int getPid(int row);
+
+    int getTid(int row);
+
+    String getLevel(int row);
+
+    String getTag(int row);
+
+    String getApp(int row);
+
+    void setApp(int row, String app);
+
+    /**
+     * @return device row was logged by; null unless logs from multiple devices are merged
+     */
+    String getDevice(int row);
+
+    String getMessage(int row);
+
+    /**
+     * @return first row logged at or after timestamp (rows are expected to be in time order); size() if none
+     */
+    int findRow(long timestamp);
+
+    /**
+     * @return LogEntry with values from given row
+     */
+    LogEntry get(int row);
+
+    /**
+     * read rows [start..end) without changing any cached state
+     * NOTE: safe to call from multiple threads as long as storage isn't being changed at the same time
+     */
+    void read(int start, int end, RowVisitor visitor);
+
+    /**
+     * release any resources (files) used by this storage
+     */
+    void close();
+}
@@ -0,0 +1,330 @@
+package com.jpage4500.devicemanager.table;
+
+import com.jpage4500.devicemanager.data.LogEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * compact, column-based ring buffer of log entries
+ * - timestamp, pid, tid and level are stored in primitive arrays
+ * - tag and app are stored as ids into a shared dictionary
+ * - messages are stored as UTF-8 in large byte[] chunks; chunks are dropped as old rows are removed
+ * <p>
+ * rows are numbered 0 (oldest) to size()-1 (newest)
+ * NOTE: not thread safe
+ */
+public class LogStore implements LogStorage {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int INITIAL_SIZE = 4096;
+    // when full, remove a few extra rows to prevent needing to do this on every new log
+    private static final int REMOVE_EXTRA = 5000;
+
+    private static final String[] LEVELS = new String[128];
+
+    static {
+        for (int i = 1; i < LEVELS.length; i++) {
+            LEVELS[i] = String.valueOf((char) i);
+        }
+    }
+
+    private final int capacity;
+    private int head;
+    private int size;
+
+    // column arrays grow as needed up to capacity
+    private long[] timestamps;
+    private int[] pids;
+    private int[] tids;
+    private byte[] levels;
+    private int[] tagIds;
+    private int[] appIds;
+    // index + 1 of device in deviceList; 0 if not set
+    private byte[] deviceIds;
+    // global arena position and length of each message
+    private long[] messagePos;
+    private int[] messageLen;
+
+    // -- message arena --
+    private final ArrayList<byte[]> chunkList = new ArrayList<>();
+    // global index of first chunk in chunkList
+    private long firstChunk;
+    // global position where next message will be written
+    private long writePos;
+
+    // -- dictionary for tags/apps --
+    private final StringDictionary dictionary = new StringDictionary();
+    // devices (only set when logs from multiple devices are merged); max 255
+    private final List<String> deviceList = new ArrayList<>();
+
+    public LogStore(int capacity) {
+        this.capacity = capacity;
+        allocateColumns(Math.min(INITIAL_SIZE, capacity));
+    }
+
+    private void allocateColumns(int length) {
+        timestamps = new long[length];
+        pids = new int[length];
+        tids = new int[length];
+        levels = new byte[length];
+        tagIds = new int[length];
+        appIds = new int[length];
+        deviceIds = new byte[length];
+        messagePos = new long[length];
+        messageLen = new int[length];
+    }
+
+    /**
+     * grow column arrays; rows are copied in order so head moves back to 0
+     */
+    private void grow() {
+        int length = timestamps.length;
+        int newLength = (int) Math.min((long) length * 2, capacity);
+        long[] oldTimestamps = timestamps;
+        int[] oldPids = pids;
+        int[] oldTids = tids;
+        byte[] oldLevels = levels;
+        int[] oldTagIds = tagIds;
+        int[] oldAppIds = appIds;
+        byte[] oldDeviceIds = deviceIds;
+        long[] oldMessagePos = messagePos;
+        int[] oldMessageLen = messageLen;
+        allocateColumns(newLength);
+        // copy [head..length) then [0..head)
+        int firstPart = Math.min(size, length - head);
+        int secondPart = size - firstPart;
+        for (int[] part : new int[][]{{head, 0, firstPart}, {0, firstPart, secondPart}}) {
+            int from = part[0], to = part[1], count = part[2];
+            System.arraycopy(oldTimestamps, from, timestamps, to, count);
+            System.arraycopy(oldPids, from, pids, to, count);
+            System.arraycopy(oldTids, from, tids, to, count);
+            System.arraycopy(oldLevels, from, levels, to, count);
+            System.arraycopy(oldTagIds, from, tagIds, to, count);
+            System.arraycopy(oldAppIds, from, appIds, to, count);
+            System.arraycopy(oldDeviceIds, from, deviceIds, to, count);
+            System.arraycopy(oldMessagePos, from, messagePos, to, count);
+            System.arraycopy(oldMessageLen, from, messageLen, to, count);
+        }
+        head = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int trim(int numToAdd) {
+        int overflow = size + numToAdd - capacity;
+        if (overflow <= 0) return 0;
+        int numRemove = Math.min(overflow + REMOVE_EXTRA, size);
+        removeFirst(numRemove);
+        return numRemove;
+    }
+
+    /**
+     * add entry to end of store
+     * NOTE: caller must make room first (see trim()) if store is full
+     */
+    @Override
+    public boolean add(LogEntry entry) {
+        if (size == capacity) throw new IllegalStateException("store is full");
+        if (size == timestamps.length) grow();
+        int slot = slot(size);
+        timestamps[slot] = entry.timestamp;
+        pids[slot] = entry.pid;
+        tids[slot] = entry.tid;
+        levels[slot] = entry.level != null && !entry.level.isEmpty() ? (byte) entry.level.charAt(0) : 0;
+        tagIds[slot] = dictionary.toId(entry.tag);
+        appIds[slot] = dictionary.toId(entry.app);
+        deviceIds[slot] = toDeviceId(entry.device);
+
+        String message = entry.getMessage();
+        byte[] data = message != null ? message.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int len = Math.min(data.length, CHUNK_SIZE);
+        long pos = allocate(len);
+        byte[] chunk = chunkList.get(chunkList.size() - 1);
+        System.arraycopy(data, 0, chunk, (int) (pos % CHUNK_SIZE), len);
+        messagePos[slot] = pos;
+        messageLen[slot] = len;
+        size++;
+        return true;
+    }
+
+    /**
+     * remove oldest rows
+     */
+    public void removeFirst(int count) {
+        count = Math.min(count, size);
+        head = (head + count) % timestamps.length;
+        size -= count;
+        if (size == 0) {
+            clear();
+            return;
+        }
+        // drop message chunks that are no longer used
+        long firstUsedChunk = messagePos[head] / CHUNK_SIZE;
+        if (firstChunk < firstUsedChunk) {
+            chunkList.subList(0, (int) (firstUsedChunk - firstChunk)).clear();
+            firstChunk = firstUsedChunk;
+        }
+    }
+
+    @Override
+    public void clear() {
+        head = 0;
+        size = 0;
+        allocateColumns(Math.min(INITIAL_SIZE, capacity));
+        chunkList.clear();
+        firstChunk = 0;
+        writePos = 0;
+    }
+
+    /**
+     * reserve len bytes in the arena; a message never spans 2 chunks
+     *
+     * @return global position
+     */
+    private long allocate(int len) {
+        long chunkIndex = writePos / CHUNK_SIZE;
+        if (writePos % CHUNK_SIZE + len > CHUNK_SIZE) {
+            // doesn't fit; start next chunk
+            chunkIndex++;
+            writePos = chunkIndex * CHUNK_SIZE;
+        }
+        if (chunkList.isEmpty()) firstChunk = chunkIndex;
+        while (firstChunk + chunkList.size() <= chunkIndex) {
+            chunkList.add(new byte[CHUNK_SIZE]);
+        }
+        long pos = writePos;
+        writePos += len;
+        return pos;
+    }
+
+    private int slot(int row) {
+        int slot = head + row;
+        return slot >= timestamps.length ? slot - timestamps.length : slot;
+    }
+
+    @Override
+    public long getTimestamp(int row) {
+        return timestamps[slot(row)];
+    }
+
+    @Override
+    public int findRow(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[slot(mid)] < timestamp) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    @Override
+    public int getPid(int row) {
+        return pids[slot(row)];
+    }
+
+    @Override
+    public int getTid(int row) {
+        return tids[slot(row)];
+    }
+
+    @Override
+    public String getLevel(int row) {
+        byte level = levels[slot(row)];
+        return level == 0 ? null : getLevelString(level);
+    }
+
+    static String getLevelString(byte level) {
+        return LEVELS[level & 0x7f];
+    }
+
+    @Override
+    public String getTag(int row) {
+        return dictionary.fromId(tagIds[slot(row)]);
+    }
+
+    @Override
+    public String getApp(int row) {
+        return dictionary.fromId(appIds[slot(row)]);
+    }
+
+    @Override
+    public void setApp(int row, String app) {
+        appIds[slot(row)] = dictionary.toId(app);
+    }
+
+    @Override
+    public String getDevice(int row) {
+        int id = deviceIds[slot(row)] & 0xff;
+        return id == 0 ? null : deviceList.get(id - 1);
+    }
+
+    private byte toDeviceId(String device) {
+        if (device == null) return 0;
+        int index = deviceList.indexOf(device);
+        if (index < 0) {
+            if (deviceList.size() == 255) return 0;
+            deviceList.add(device);
+            index = deviceList.size() - 1;
+        }
+        return (byte) (index + 1);
+    }
+
+    @Override
+    public String getMessage(int row) {
+        int slot = slot(row);
+        long pos = messagePos[slot];
+        byte[] chunk = getChunk(pos);
+        return new String(chunk, (int) (pos % CHUNK_SIZE), messageLen[slot], StandardCharsets.UTF_8);
+    }
+
+    private byte[] getChunk(long pos) {
+        return chunkList.get((int) (pos / CHUNK_SIZE - firstChunk));
+    }
+
+    @Override
+    public LogEntry get(int row) {
+        LogEntry entry = new LogEntry();
+        int slot = slot(row);
+        entry.timestamp = timestamps[slot];
+        entry.pid = pids[slot];
+        entry.tid = tids[slot];
+        entry.level = getLevel(row);
+        entry.tag = dictionary.fromId(tagIds[slot]);
+        entry.app = dictionary.fromId(appIds[slot]);
+        entry.device = getDevice(row);
+        entry.setMessage(getMessage(row));
+        return entry;
+    }
+
+    @Override
+    public void read(int start, int end, RowVisitor visitor) {
+        for (int row = start; row < end; row++) {
+            visitor.visit(row, get(row));
+        }
+    }
+
+    /**
+     * @return approximate heap used by stored rows
+     */
+    public long getMemoryUsed() {
+        long perRow = 8 + 4 + 4 + 1 + 4 + 4 + 8 + 4;
+        return perRow * timestamps.length + (long) chunkList.size() * CHUNK_SIZE;
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+}
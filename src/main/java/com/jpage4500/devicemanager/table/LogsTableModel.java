@@ -1,53 +1,108 @@
 package com.jpage4500.devicemanager.table;
 
 import com.jpage4500.devicemanager.data.LogEntry;
+import com.jpage4500.devicemanager.utils.PreferenceUtils;
 import com.jpage4500.devicemanager.utils.TextUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class LogsTableModel extends AbstractTableModel {
     private static final Logger log = LoggerFactory.getLogger(LogsTableModel.class);
-    private static final int MAX_LINES = 90000;
-    private static final int REMOVE_EXTRA = 5000;
+    private static final int MAX_LINES = 1000000;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
 
-    private final ArrayList<LogEntry> logEntryList;
-    // map of PID <-> app name
-    private final Map<String, String> processMap;
+    private final LogStorage logStore;
+    // visible columns; DEVICE is only shown when logs from multiple devices are merged
+    private final Columns[] columns;
+    // token index for searches; only used when storage size is bounded
+    private final LogIndex logIndex;
+    // last row returned by getValueAt(); renderer asks for the same row once per column
+    private int cachedRow = -1;
+    private LogEntry cachedEntry;
+    // device -> (PID <-> app name); only used for rows added before their app was known
+    // NOTE: PIDs are only unique per device; device is "" when logs aren't merged
+    private final Map<String, Map<Integer, String>> processMap = new ConcurrentHashMap<>();
+    // storage is only changed on the EDT; background readers (ie: filtering) hold the read lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // number of rows removed from the start since model was created; row id = removedCount + row
+    private long removedCount;
     private String searchText;
+    private boolean isClosed;
 
     /**
      * get text value for a given LogEntry and column
      */
     public String getTextValue(int row, int column) {
-        LogEntry logEntry = (LogEntry) getValueAt(row, column);
-        if (logEntry == null) return null;
-        LogsTableModel.Columns col = LogsTableModel.Columns.values()[column];
+        if (row >= logStore.size() || column >= getColumnCount()) return null;
+        if (row == cachedRow) return getTextValue(cachedEntry, column);
+        LogsTableModel.Columns col = columns[column];
+        // read single column from store
         return switch (col) {
-            case DATE -> logEntry.date;
-            case APP -> {
-                // set app using app <-> pid list
-                logEntry.app = getAppForPid(logEntry.pid);
-                yield logEntry.app;
+            case DEVICE -> logStore.getDevice(row);
+            case DATE -> DATE_FORMAT.format(Instant.ofEpochMilli(logStore.getTimestamp(row)));
+            case APP -> getApp(row);
+            case TID -> {
+                int tid = logStore.getTid(row);
+                if (tid == logStore.getPid(row)) yield "-";
+                yield String.valueOf(tid);
             }
+            case PID -> String.valueOf(logStore.getPid(row));
+            case LEVEL -> logStore.getLevel(row);
+            case TAG -> logStore.getTag(row);
+            case MSG -> logStore.getMessage(row);
+        };
+    }
+
+    private String getTextValue(LogEntry logEntry, int column) {
+        LogsTableModel.Columns col = columns[column];
+        return switch (col) {
+            case DEVICE -> logEntry.device;
+            case DATE -> logEntry.getDate();
+            case APP -> logEntry.app;
             case TID -> {
-                if (TextUtils.equals(logEntry.tid, logEntry.pid)) yield "-";
-                yield logEntry.tid;
+                if (logEntry.tid == logEntry.pid) yield "-";
+                yield String.valueOf(logEntry.tid);
             }
-            case PID -> logEntry.pid;
+            case PID -> String.valueOf(logEntry.pid);
             case LEVEL -> logEntry.level;
             case TAG -> logEntry.tag;
-            case MSG -> logEntry.message;
+            case MSG -> logEntry.getMessage();
         };
+    }
 
+    /**
+     * @return app for row; looked up using app <-> pid list the first time and saved in store
+     */
+    private String getApp(int row) {
+        String app = logStore.getApp(row);
+        if (app == null) {
+            app = getAppForPid(logStore.getDevice(row), logStore.getPid(row));
+            if (app != null) {
+                lock.writeLock().lock();
+                try {
+                    logStore.setApp(row, app);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        return app;
     }
 
     public enum Columns {
+        DEVICE("Device"),
         DATE("Date"),
         APP("App"),
         TID("TID"),
@@ -68,60 +123,205 @@ public class LogsTableModel extends AbstractTableModel {
         }
     }
 
-    public LogsTableModel() {
-        logEntryList = new ArrayList<>();
-        processMap = new HashMap<>();
+    /**
+     * @param name used to name log history files (ie: device serial)
+     */
+    public LogsTableModel(String name) {
+        this(name, false);
+    }
+
+    /**
+     * @param name       used to name log history files (ie: device serial)
+     * @param showDevice true to show DEVICE column (merged logs from multiple devices)
+     */
+    public LogsTableModel(String name, boolean showDevice) {
+        if (showDevice) columns = Columns.values();
+        else columns = Arrays.stream(Columns.values()).filter(c -> c != Columns.DEVICE).toArray(Columns[]::new);
+        logStore = createStorage(name);
+        logIndex = logStore.capacity() <= MAX_LINES ? new LogIndex() : null;
+    }
+
+    private static LogStorage createStorage(String name) {
+        if (PreferenceUtils.getPreference(PreferenceUtils.PrefBoolean.PREF_LOG_HISTORY_ON_DISK, false)) {
+            try {
+                LogFileStore.HistorySize historySize = LogFileStore.getHistorySize(PreferenceUtils.getPreference(PreferenceUtils.Pref.PREF_LOG_HISTORY_SIZE));
+                return new LogFileStore(name, historySize);
+            } catch (IOException e) {
+                log.error("createStorage: Exception: {}", e.getMessage());
+            }
+        }
+        return new LogStore(MAX_LINES);
+    }
+
+    /**
+     * release log storage; model can't be used after this
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            removedCount += logStore.size();
+            logStore.close();
+            isClosed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        clearCache();
     }
 
     public void clearLogs() {
-        this.logEntryList.clear();
+        lock.writeLock().lock();
+        try {
+            removedCount += logStore.size();
+            logStore.clear();
+            if (logIndex != null) logIndex.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        clearCache();
         fireTableDataChanged();
     }
 
     public void addLogEntry(List<LogEntry> logEntryList) {
-        this.logEntryList.addAll(logEntryList);
-        checkSizeAndUpdate(logEntryList.size());
+        if (isClosed) return;
+        int numAdded = Math.min(logEntryList.size(), logStore.capacity());
+        int numRemove;
+        int startPos;
+        // rows actually stored; can be less than numAdded if store fails (ie: disk full)
+        int numStored = 0;
+        lock.writeLock().lock();
+        try {
+            numRemove = logStore.trim(numAdded);
+            if (numRemove > 0) {
+                removedCount += numRemove;
+                if (logIndex != null) logIndex.removeFirst(numRemove);
+            }
+            startPos = logStore.size();
+            for (int i = logEntryList.size() - numAdded; i < logEntryList.size(); i++) {
+                LogEntry logEntry = logEntryList.get(i);
+                if (!logStore.add(logEntry)) {
+                    log.error("addLogEntry: unable to store {} of {} entries", numAdded - numStored, numAdded);
+                    break;
+                }
+                if (logIndex != null) logIndex.add(logEntry);
+                numStored++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (numRemove > 0) {
+            //log.trace("addLogEntry: removed:{}, size:{}", numRemove, logStore.size());
+            clearCache();
+            fireTableRowsDeleted(0, numRemove - 1);
+        }
+        if (numStored > 0) fireTableRowsInserted(startPos, startPos + numStored - 1);
     }
 
-    public void setProcessMap(Map<String, String> processMap) {
-        this.processMap.clear();
-        this.processMap.putAll(processMap);
+    /**
+     * @return row id of model row 0; ids don't change as rows are removed from the start
+     */
+    public long getFirstRowId() {
+        return removedCount;
+    }
 
-        // NOTE: is it worth refreshing all rows just to update old log entries?
-        //fireTableDataChanged();
+    /**
+     * read rows by row id (see getFirstRowId()) from any thread; rows that were removed are skipped
+     * NOTE: LogEntry.app is set from the pid map but isn't saved
+     *
+     * @param visitor called with row id and entry
+     */
+    public void readRows(long startId, long endId, RowIdVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            readRowsLocked(startId, endId, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * read row ids (baseId + rows[i]) for i in [from..to) from any thread; rows that were removed are skipped
+     * - rows must be ascending; runs of consecutive rows are read together under a single read lock
+     */
+    public void readRows(long baseId, int[] rows, int from, int to, RowIdVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            int i = from;
+            while (i < to) {
+                int j = i + 1;
+                while (j < to && rows[j] == rows[j - 1] + 1) j++;
+                readRowsLocked(baseId + rows[i], baseId + rows[j - 1] + 1, visitor);
+                i = j;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void readRowsLocked(long startId, long endId, RowIdVisitor visitor) {
+        long firstId = removedCount;
+        int start = (int) Math.max(0, startId - firstId);
+        int end = (int) Math.min(logStore.size(), endId - firstId);
+        if (start >= end) return;
+        logStore.read(start, end, (row, logEntry) -> {
+            if (logEntry.app == null) logEntry.app = getAppForPid(logEntry.device, logEntry.pid);
+            visitor.visit(firstId + row, logEntry);
+        });
+    }
+
+    public interface RowIdVisitor {
+        void visit(long rowId, LogEntry logEntry);
+    }
+
+    private void clearCache() {
+        cachedRow = -1;
+        cachedEntry = null;
+    }
+
+    /**
+     * add processes found since last call; apps of new rows are normally set when read from device
+     *
+     * @param device device name processes were found on (see LogEntry.device); null if logs aren't merged
+     */
+    public void addProcesses(String device, Map<Integer, String> processMap) {
+        this.processMap.computeIfAbsent(getProcessKey(device), key -> new ConcurrentHashMap<>()).putAll(processMap);
     }
 
     public void setSearchText(String text) {
         if (TextUtils.equals(searchText, text)) return;
         searchText = text;
-        fireTableDataChanged();
+        // repaint only; rows didn't change so there's no need to filter again
+        if (logStore.size() > 0) fireTableRowsUpdated(0, logStore.size() - 1);
     }
 
     /**
-     * @return the latest log entry time
+     * @return model rows (ascending) matching query or null if rows aren't indexed
      */
-    public Long getLastLogTime() {
-        if (logEntryList.isEmpty()) return null;
-        LogEntry last = logEntryList.get(logEntryList.size() - 1);
-        return last.timestamp;
+    public int[] search(LogIndex.Query query) {
+        if (logIndex == null) return null;
+        // NOTE: doesn't save app to store (getApp() would need the write lock)
+        return logIndex.search(query, row -> {
+            String app = logStore.getApp(row);
+            return app != null ? app : getAppForPid(logStore.getDevice(row), logStore.getPid(row));
+        });
     }
 
-    private void checkSizeAndUpdate(int numAdded) {
-        if (logEntryList.size() > MAX_LINES) {
-            // remove rows over the max and also a little more to prevent needing to do this on every new log
-            int numRemove = (logEntryList.size() - MAX_LINES) + REMOVE_EXTRA;
-            //log.trace("checkSizeAndUpdate: removing:{}, size:{}", numRemove, logEntryList.size());
-            logEntryList.subList(0, numRemove).clear();
-            fireTableRowsDeleted(0, numRemove - 1);
-        } else {
-            int startPos = logEntryList.size() - numAdded;
-            int endPos = logEntryList.size() - 1;
-            fireTableRowsInserted(startPos, endPos);
-        }
+    /**
+     * @return first row logged at or after timestamp; getRowCount() if none
+     */
+    public int findRow(long timestamp) {
+        return logStore.findRow(timestamp);
+    }
+
+    /**
+     * @return the latest log entry time
+     */
+    public Long getLastLogTime() {
+        if (logStore.size() == 0) return null;
+        return logStore.getTimestamp(logStore.size() - 1);
     }
 
     public int getColumnCount() {
-        return Columns.values().length;
+        return columns.length;
     }
 
     @Override
@@ -133,15 +333,13 @@ public class LogsTableModel extends AbstractTableModel {
      * return one of the predefined columns
      */
     public LogsTableModel.Columns getColumnType(int colIndex) {
-        Columns[] values = Columns.values();
-        if (colIndex < values.length) {
-            return values[colIndex];
+        if (colIndex < columns.length) {
+            return columns[colIndex];
         }
         return null;
     }
 
     public String getColumnName(int i) {
-        Columns[] columns = Columns.values();
         if (i < columns.length) {
             Columns colType = columns[i];
             return colType.toString();
@@ -150,17 +348,30 @@ public class LogsTableModel extends AbstractTableModel {
     }
 
     public int getRowCount() {
-        return logEntryList.size();
+        return logStore.size();
     }
 
+    /**
+     * @return LogEntry for row; created from the store on demand
+     */
     public Object getValueAt(int row, int col) {
-        if (row >= logEntryList.size()) return null;
+        if (row >= logStore.size()) return null;
         else if (col >= getColumnCount()) return null;
-        return logEntryList.get(row);
+        if (row != cachedRow) {
+            getApp(row);
+            cachedEntry = logStore.get(row);
+            cachedRow = row;
+        }
+        return cachedEntry;
+    }
+
+    public String getAppForPid(String device, int pid) {
+        Map<Integer, String> pidMap = processMap.get(getProcessKey(device));
+        return pidMap != null ? pidMap.get(pid) : null;
     }
 
-    public String getAppForPid(String pid) {
-        return processMap.get(pid);
+    private static String getProcessKey(String device) {
+        return device != null ? device : "";
     }
 
     public String getSearchText() {
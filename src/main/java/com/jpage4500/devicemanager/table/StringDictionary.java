@@ -0,0 +1,32 @@
+package com.jpage4500.devicemanager.table;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * maps repeated Strings (tags, apps) to small int ids
+ * NOTE: not thread safe
+ */
+class StringDictionary {
+    static final int NO_ID = -1;
+
+    private final Map<String, Integer> idMap = new HashMap<>();
+    private final List<String> valueList = new ArrayList<>();
+
+    int toId(String value) {
+        if (value == null) return NO_ID;
+        Integer id = idMap.get(value);
+        if (id == null) {
+            id = valueList.size();
+            valueList.add(value);
+            idMap.put(value, id);
+        }
+        return id;
+    }
+
+    String fromId(int id) {
+        return id < 0 || id >= valueList.size() ? null : valueList.get(id);
+    }
+}
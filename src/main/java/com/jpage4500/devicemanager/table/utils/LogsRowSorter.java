@@ -2,67 +2,460 @@ package com.jpage4500.devicemanager.table.utils;
 
 import com.jpage4500.devicemanager.data.LogEntry;
 import com.jpage4500.devicemanager.data.LogFilter;
+import com.jpage4500.devicemanager.table.LogIndex;
+import com.jpage4500.devicemanager.table.LogsTableModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class LogsRowSorter extends TableRowSorter<TableModel> {
+/**
+ * append-only RowSorter for logs (no sorting, filter only)
+ * - new rows added to the end are filtered as they arrive; existing rows aren't filtered again
+ * - rows removed from the start are dropped from the view index without re-filtering
+ * - view index is an int[] of model rows (+ modelBase) so a head trim only adjusts offsets
+ * - search text is resolved using the model's token index instead of scanning every row
+ * - when the filter changes on a large model, rows are filtered in parallel off the EDT; the current view
+ * stays in place until the new one is ready and a newer filter cancels an older one
+ */
+public class LogsRowSorter extends RowSorter<TableModel> {
     private static final Logger log = LoggerFactory.getLogger(LogsRowSorter.class);
 
-    private final LogsRowFilter logsRowFilter;
+    // filter in the background when model has at least this many rows
+    private static final int BACKGROUND_MIN_ROWS = 20000;
+    // rows per fork-join task
+    private static final int TASK_ROWS = 8192;
+    private static final int PROGRESS_INTERVAL_MS = 100;
 
-    public LogsRowSorter(TableModel model) {
-        super(model);
-        logsRowFilter = new LogsRowFilter();
+    public interface FilterListener {
+        /**
+         * called on the EDT while a background filter is running and once it's done
+         */
+        void onFilterProgress();
     }
 
-    @Override
-    public boolean isSortable(int i) {
-        return false;
+    private final LogsTableModel model;
+    // filter used by current view
+    private Filter filter = new Filter(null, null);
+    // filter most recently set (may still be running in the background)
+    private Filter requestedFilter = filter;
+    private FilterTask filterTask;
+    private FilterListener listener;
+    private Timer progressTimer;
+
+    // model rows of visible rows (+ modelBase); only used when a filter is set
+    private int[] viewToModel = new int[1024];
+    // index of first used entry in viewToModel
+    private int viewStart;
+    private int viewCount;
+    // incremented as rows are removed from the start of the model
+    private int modelBase;
+    // number of model rows already filtered
+    private int modelCount;
+
+    /**
+     * search query + filters; rows must match ALL
+     */
+    private static class Filter {
+        final LogIndex.Query searchQuery;
+        final LogFilter[] logFilterArr;
+
+        Filter(LogIndex.Query searchQuery, LogFilter[] logFilterArr) {
+            this.searchQuery = searchQuery;
+            this.logFilterArr = logFilterArr;
+        }
+
+        boolean isFiltered() {
+            return searchQuery != null || (logFilterArr != null && logFilterArr.length > 0);
+        }
+
+        /**
+         * @param checkSearch true to also check search query (false if row was found using the index)
+         */
+        boolean isMatch(LogEntry logEntry, boolean checkSearch) {
+            if (logEntry == null) return false;
+            if (checkSearch && searchQuery != null && !searchQuery.isMatch(logEntry)) return false;
+            if (logFilterArr == null) return true;
+            for (LogFilter filter : logFilterArr) {
+                if (filter != null && !filter.isMatch(logEntry)) return false;
+            }
+            return true;
+        }
     }
 
-    @Override
-    protected boolean useToString(int c) {
-        return false;
+    public LogsRowSorter(LogsTableModel model) {
+        this.model = model;
+        modelCount = model.getRowCount();
+    }
+
+    public void setFilterListener(FilterListener listener) {
+        this.listener = listener;
     }
 
     public void setFilter(LogFilter... logFilterArr) {
-        logsRowFilter.setFilter(logFilterArr);
+        setFilter(null, logFilterArr);
+    }
+
+    /**
+     * @param searchQuery search text (see {@link LogIndex}) that rows must also match; null for none
+     */
+    public void setFilter(LogIndex.Query searchQuery, LogFilter... logFilterArr) {
+        requestedFilter = new Filter(searchQuery, logFilterArr);
+        refilter();
     }
 
     public LogFilter[] getFilter() {
-        return logsRowFilter.logFilterArr;
+        return requestedFilter.logFilterArr;
     }
 
-    @Override
-    public RowFilter<? super TableModel, ? super Integer> getRowFilter() {
-        return logsRowFilter;
+    /**
+     * @return percent of rows checked by the background filter or -1 if not filtering
+     */
+    public int getFilterProgress() {
+        FilterTask task = filterTask;
+        if (task == null) return -1;
+        return task.total == 0 ? 0 : (int) (task.numDone.get() * 100 / task.total);
+    }
+
+    private boolean isFiltered() {
+        return filter.isFiltered();
     }
 
-    private class LogsRowFilter extends RowFilter<Object, Object> {
-        private LogFilter[] logFilterArr;
+    /**
+     * filter all model rows and notify listeners
+     */
+    private void refilter() {
+        cancelFilterTask();
+        modelCount = model.getRowCount();
+        if (requestedFilter.isFiltered() && modelCount >= BACKGROUND_MIN_ROWS) {
+            startFilterTask(requestedFilter);
+            return;
+        }
+
+        // previous mapping is used by JTable to keep the selection
+        int[] lastViewToModel = getViewToModel();
+        filter = requestedFilter;
+        viewStart = 0;
+        viewCount = 0;
+        modelBase = 0;
+        if (isFiltered()) {
+            int[] searchRows = filter.searchQuery != null ? model.search(filter.searchQuery) : null;
+            if (searchRows != null) {
+                // only check rows found by search
+                for (int row : searchRows) {
+                    if (filter.isMatch((LogEntry) model.getValueAt(row, 0), false)) append(row);
+                }
+            } else {
+                filterRows(0, modelCount);
+            }
+        }
+        fireRowSorterChanged(lastViewToModel);
+    }
+
+    /**
+     * @return current view -> model mapping
+     */
+    private int[] getViewToModel() {
+        int[] result = new int[getViewRowCount()];
+        for (int i = 0; i < result.length; i++) result[i] = convertRowIndexToModel(i);
+        return result;
+    }
+
+    /**
+     * filter model rows [start..end) and add matches to the end of the view
+     */
+    private void filterRows(int start, int end) {
+        for (int row = start; row < end; row++) {
+            if (filter.isMatch((LogEntry) model.getValueAt(row, 0), true)) append(row + modelBase);
+        }
+    }
+
+    private void append(int value) {
+        if (viewStart + viewCount == viewToModel.length) {
+            if (viewStart > viewToModel.length / 2) {
+                // enough room at the start; shift down
+                System.arraycopy(viewToModel, viewStart, viewToModel, 0, viewCount);
+            } else {
+                viewToModel = Arrays.copyOfRange(viewToModel, viewStart, viewToModel.length * 2 + viewStart);
+            }
+            viewStart = 0;
+        }
+        viewToModel[viewStart + viewCount] = value;
+        viewCount++;
+    }
+
+    /**
+     * filter rows that exist now using a parallel scan; rows added/removed meanwhile are handled once it's done
+     */
+    private void startFilterTask(Filter newFilter) {
+        long firstId = model.getFirstRowId();
+        int[] searchRows = newFilter.searchQuery != null ? model.search(newFilter.searchQuery) : null;
+        FilterTask task = new FilterTask(model, newFilter, firstId, firstId + modelCount, searchRows);
+        filterTask = task;
+        log.trace("startFilterTask: rows:{}, search:{}", modelCount, searchRows != null ? searchRows.length : -1);
+
+        ForkJoinPool.commonPool().execute(() -> {
+            long[] rowIds = null;
+            try {
+                rowIds = task.invoke();
+            } catch (Exception e) {
+                log.error("startFilterTask: Exception: {}", e.getMessage());
+            }
+            long[] result = rowIds;
+            SwingUtilities.invokeLater(() -> onFilterTaskDone(task, result));
+        });
+
+        if (progressTimer == null) {
+            progressTimer = new Timer(PROGRESS_INTERVAL_MS, e -> notifyProgress());
+        }
+        progressTimer.start();
+        notifyProgress();
+    }
+
+    private void cancelFilterTask() {
+        if (filterTask == null) return;
+        filterTask.isCancelled.set(true);
+        filterTask = null;
+        progressTimer.stop();
+    }
+
+    private void notifyProgress() {
+        if (listener != null) listener.onFilterProgress();
+    }
+
+    /**
+     * swap in the new view; called on EDT
+     */
+    private void onFilterTaskDone(FilterTask task, long[] rowIds) {
+        if (task != filterTask) return;
+        filterTask = null;
+        progressTimer.stop();
+        if (rowIds == null) rowIds = new long[0];
+
+        int[] lastViewToModel = getViewToModel();
+        filter = task.filter;
+        viewStart = 0;
+        viewCount = 0;
+        modelBase = 0;
+        modelCount = model.getRowCount();
+        long firstId = model.getFirstRowId();
+        // skip rows removed while filtering
+        for (long rowId : rowIds) {
+            if (rowId >= firstId) append((int) (rowId - firstId));
+        }
+        // rows added while filtering
+        filterRows((int) Math.max(0, task.endId - firstId), modelCount);
+        log.trace("onFilterTaskDone: rows:{}, view:{}", modelCount, viewCount);
+        fireRowSorterChanged(lastViewToModel);
+        notifyProgress();
+    }
+
+    /**
+     * filter row ids [startId..endId) (or only searchRows if set)
+     * returns matching row ids in ascending order
+     */
+    private static class FilterTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        final transient LogsTableModel model;
+        final transient Filter filter;
+        final long startId;
+        final long endId;
+        // model rows (at time task was created) found by search index
+        final int[] searchRows;
+        final AtomicBoolean isCancelled;
+        final AtomicLong numDone;
+        final long total;
+        // range of rows (or searchRows positions) handled by this task
+        private final int from;
+        private final int to;
+
+        FilterTask(LogsTableModel model, Filter filter, long startId, long endId, int[] searchRows) {
+            this.model = model;
+            this.filter = filter;
+            this.startId = startId;
+            this.endId = endId;
+            this.searchRows = searchRows;
+            isCancelled = new AtomicBoolean();
+            numDone = new AtomicLong();
+            from = 0;
+            to = searchRows != null ? searchRows.length : (int) (endId - startId);
+            total = to;
+        }
+
+        private FilterTask(FilterTask parent, int from, int to) {
+            model = parent.model;
+            filter = parent.filter;
+            startId = parent.startId;
+            endId = parent.endId;
+            searchRows = parent.searchRows;
+            isCancelled = parent.isCancelled;
+            numDone = parent.numDone;
+            total = parent.total;
+            this.from = from;
+            this.to = to;
+        }
 
         @Override
-        public boolean include(Entry<?, ?> entry) {
-            // if no filter set, include log row
-            if (logFilterArr == null || logFilterArr.length == 0) return true;
+        protected long[] compute() {
+            if (isCancelled.get()) return new long[0];
+            if (to - from > TASK_ROWS) {
+                int mid = (from + to) >>> 1;
+                FilterTask left = new FilterTask(this, from, mid);
+                left.fork();
+                long[] rightResult = new FilterTask(this, mid, to).compute();
+                long[] leftResult = left.join();
+                long[] result = Arrays.copyOf(leftResult, leftResult.length + rightResult.length);
+                System.arraycopy(rightResult, 0, result, leftResult.length, rightResult.length);
+                return result;
+            }
 
-            // ALL filters must match in order to include this row
-            LogEntry logEntry = (LogEntry) entry.getValue(0);
-            for (LogFilter filter : logFilterArr) {
-                if (filter == null || !filter.isMatch(logEntry)) return false;
+            RowIdList matchList = new RowIdList();
+            if (searchRows != null) {
+                // only check rows found by search
+                model.readRows(startId, searchRows, from, to, (id, logEntry) -> {
+                    if (filter.isMatch(logEntry, false)) matchList.add(id);
+                });
+            } else {
+                model.readRows(startId + from, startId + to, (id, logEntry) -> {
+                    if (filter.isMatch(logEntry, true)) matchList.add(id);
+                });
             }
-            // all match!
-            return true;
+            numDone.addAndGet(to - from);
+            return matchList.toArray();
         }
+    }
 
-        public void setFilter(LogFilter... logFilterArr) {
-            this.logFilterArr = logFilterArr;
-            sort();
+    private static class RowIdList {
+        private long[] ids = new long[256];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+
+    @Override
+    public TableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        // not sortable
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (!isFiltered()) return index;
+        if (index < 0 || index >= viewCount) throw new IndexOutOfBoundsException("invalid index: " + index);
+        return viewToModel[viewStart + index] - modelBase;
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (!isFiltered()) return index;
+        int pos = Arrays.binarySearch(viewToModel, viewStart, viewStart + viewCount, index + modelBase);
+        return pos >= 0 ? pos - viewStart : -1;
+    }
+
+    /**
+     * @return first view row showing model row index or a later row; getViewRowCount() if none
+     */
+    public int convertRowIndexToViewAtOrAfter(int index) {
+        if (!isFiltered()) return index;
+        int pos = Arrays.binarySearch(viewToModel, viewStart, viewStart + viewCount, index + modelBase);
+        if (pos < 0) pos = -pos - 1;
+        return pos - viewStart;
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        // not sortable
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return isFiltered() ? viewCount : model.getRowCount();
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        refilter();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        refilter();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        if (firstRow != modelCount) {
+            // not an append
+            log.debug("rowsInserted: unexpected insert: {}-{}, count:{}", firstRow, endRow, modelCount);
+            refilter();
+            return;
         }
+        modelCount = endRow + 1;
+        if (isFiltered()) filterRows(firstRow, modelCount);
     }
 
-}
\ No newline at end of file
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        if (firstRow != 0) {
+            // not a head trim
+            log.debug("rowsDeleted: unexpected delete: {}-{}, count:{}", firstRow, endRow, modelCount);
+            refilter();
+            return;
+        }
+        int numRemoved = endRow + 1;
+        modelCount -= numRemoved;
+        if (!isFiltered()) return;
+        if (modelBase > (1 << 30)) {
+            // rebase to avoid overflow (rare)
+            for (int i = viewStart; i < viewStart + viewCount; i++) viewToModel[i] -= modelBase;
+            modelBase = 0;
+        }
+        modelBase += numRemoved;
+        // drop view rows that pointed to removed model rows
+        int pos = Arrays.binarySearch(viewToModel, viewStart, viewStart + viewCount, modelBase);
+        if (pos < 0) pos = -pos - 1;
+        viewCount -= pos - viewStart;
+        viewStart = pos;
+        if (viewCount == 0) viewStart = 0;
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        // log rows don't change
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        // log rows don't change
+    }
+}
@@ -2,6 +2,7 @@ package com.jpage4500.devicemanager.ui;
 
 import com.jpage4500.devicemanager.MainApplication;
 import com.jpage4500.devicemanager.data.Device;
+import com.jpage4500.devicemanager.data.DeviceChange;
 import com.jpage4500.devicemanager.data.GithubRelease;
 import com.jpage4500.devicemanager.logging.AppLoggerFactory;
 import com.jpage4500.devicemanager.manager.DeviceManager;
@@ -91,6 +92,8 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
         table = new CustomTable("devices");
         setupTable();
         panel.add(table.getScrollPane(), BorderLayout.CENTER);
+        // let device manager know which devices are visible so they get refreshed first
+        table.getScrollPane().getViewport().addChangeListener(e -> updateVisibleDevices());
 
         // -- statusbar --
         setupStatusBar(panel);
@@ -235,6 +238,9 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
         // [CMD + N] = connect device
         createCmdAction(deviceMenu, "Connect Device", KeyEvent.VK_N, e -> handleConnectDevice());
 
+        // [CMD + .] = cancel commands running on multiple devices (restart, install, custom commands..)
+        createCmdAction(deviceMenu, "Cancel Running Commands", KeyEvent.VK_PERIOD, e -> DeviceManager.getInstance().cancelTasks());
+
         JMenuBar menubar = new JMenuBar();
         menubar.add(windowMenu);
         menubar.add(deviceMenu);
@@ -458,43 +464,61 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
     }
 
     @Override
-    public void handleDevicesUpdated(List<Device> deviceList) {
+    public void handleDeviceChanges(List<DeviceChange> changeList) {
         SwingUtilities.invokeLater(() -> {
-            if (deviceList != null) {
-                List<Device> displayList = new ArrayList<>();
-                for (Device device : deviceList) {
-                    if (device.isOnline || device.isWireless()) {
-                        displayList.add(device);
-                    }
-                }
-                model.setDeviceList(displayList);
-
-                // auto-select first device
-                if (!hasSelectedDevice && !deviceList.isEmpty() && table.getSelectedRow() == -1) {
-                    table.changeSelection(0, 0, false, false);
-                    hasSelectedDevice = true;
+            boolean needsSort = false;
+            boolean isAdded = false;
+            boolean isListChanged = false;
+            for (DeviceChange change : changeList) {
+                Device device = change.device;
+                if (change.type == DeviceChange.Type.ADDED) isAdded = true;
+                if (change.type != DeviceChange.Type.CHANGED) isListChanged = true;
+                if (device.isOnline || device.isWireless()) {
+                    model.updateDevice(device);
+                } else {
+                    model.removeDevice(device);
                 }
-
-                refreshUi();
-
-                for (Device device : deviceList) {
+                if (!needsSort) needsSort = isSortAffected(change.fieldSet);
+                if (change.type != DeviceChange.Type.CHANGED || change.hasField(DeviceChange.Field.STATE)) {
                     updateDeviceState(device);
                 }
             }
+            // inserted/deleted rows are placed by the sorter; only re-sort when a sorted or filtered value changed
+            if (needsSort) sorter.sort();
+
+            // auto-select first device
+            if (isAdded && !hasSelectedDevice && model.getRowCount() > 0 && table.getSelectedRow() == -1) {
+                table.changeSelection(0, 0, false, false);
+                hasSelectedDevice = true;
+            }
+            if (isListChanged) refreshUi();
+            if (isListChanged || needsSort) updateVisibleDevices();
         });
     }
 
-    @Override
-    public void handleDeviceUpdated(Device device) {
-        SwingUtilities.invokeLater(() -> {
-            if (device.isOnline || device.isWireless()) {
-                model.updateDevice(device);
-            } else {
-                model.removeDevice(device);
+    private void updateVisibleDevices() {
+        List<String> serialList = new ArrayList<>();
+        int rowCount = table.getRowCount();
+        if (rowCount > 0 && isVisible() && getState() != JFrame.ICONIFIED) {
+            Rectangle visibleRect = table.getVisibleRect();
+            int firstRow = table.rowAtPoint(visibleRect.getLocation());
+            int lastRow = table.rowAtPoint(new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+            if (firstRow < 0) firstRow = 0;
+            if (lastRow < 0) lastRow = rowCount - 1;
+            for (int row = firstRow; row <= lastRow; row++) {
+                Device device = model.getDeviceAtRow(table.convertRowIndexToModel(row));
+                if (device != null) serialList.add(device.serial);
             }
-            updateDeviceState(device);
-            sorter.sort();
-        });
+        }
+        DeviceManager.getInstance().setVisibleDevices(serialList);
+    }
+
+    private boolean isSortAffected(Set<DeviceChange.Field> fieldSet) {
+        if (TextUtils.notEmpty(filterTextField.getCleanText())) return true;
+        for (RowSorter.SortKey sortKey : sorter.getSortKeys()) {
+            if (model.isColumnAffected(sortKey.getColumn(), fieldSet)) return true;
+        }
+        return false;
     }
 
     @Override
@@ -531,8 +555,10 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
         ExploreScreen exploreScreen = exploreViewMap.get(device.serial);
         if (exploreScreen != null) exploreScreen.updateDeviceState();
 
-        LogsScreen logsScreen = logsViewMap.get(device.serial);
-        if (logsScreen != null) logsScreen.updateDeviceState();
+        // includes merged logs of multiple devices
+        for (LogsScreen logsScreen : logsViewMap.values()) {
+            if (logsScreen.hasDevice(device)) logsScreen.updateDeviceState();
+        }
 
         InputScreen inputScreen = inputViewMap.get(device.serial);
         if (inputScreen != null) inputScreen.updateDeviceState();
@@ -731,17 +757,15 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
     }
 
     private void installFiles(List<Device> selectedDeviceList, List<File> apkList, DeviceManager.TaskListener listener) {
-        ResultWatcher resultWatcher = new ResultWatcher(getRootPane(), selectedDeviceList.size() * apkList.size(), listener);
+        ResultWatcher resultWatcher = new ResultWatcher(getRootPane(), selectedDeviceList.size(), listener);
         for (Device device : selectedDeviceList) {
-            for (File file : apkList) {
-                String filename = file.getName();
-                setDeviceBusy(device, true);
-                DeviceManager.getInstance().installApp(device, file, (isSuccess, error) -> {
-                    setDeviceBusy(device, false);
-                    resultWatcher.handleResult(isSuccess, isSuccess ? filename : error);
-                });
-            }
+            setDeviceBusy(device, true);
         }
+        DeviceManager.getInstance().installApps(selectedDeviceList, apkList, DeviceManager.DEFAULT_MULTI_DEVICE_CONCURRENCY,
+                (device, isSuccess, result) -> {
+                    setDeviceBusy(device, false);
+                    resultWatcher.handleResult(isSuccess, device.getDisplayName() + ": " + result);
+                }, null);
     }
 
     /**
@@ -770,11 +794,10 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
         // allow empty input to go through (clear current value)
         if (result == null) return;
 
+        String prop = "custom" + number;
+        DeviceManager.getInstance().setProperty(selectedDeviceList, prop, result, DeviceManager.DEFAULT_MULTI_DEVICE_CONCURRENCY,
+                null, null);
         for (Device device : selectedDeviceList) {
-            String prop = "custom" + number;
-            DeviceManager.getInstance().setProperty(device, prop, result, (isSuccess, error) -> {
-
-            });
             device.setCustomProperty(Device.CUSTOM_PROP_X + number, result);
             model.updateDevice(device);
         }
@@ -1085,9 +1108,10 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
                 "Restart devices?", JOptionPane.YES_NO_OPTION);
         if (rc != JOptionPane.YES_OPTION) return;
 
-        for (Device device : selectedDeviceList) {
-            DeviceManager.getInstance().restartDevice(device, (isSuccess, error) -> refreshDevices());
-        }
+        // refresh once all devices have been sent the command
+        DeviceManager.getInstance().runOnDevices(selectedDeviceList, DeviceManager.COMMAND_REBOOT,
+                DeviceManager.DEFAULT_MULTI_DEVICE_CONCURRENCY, DeviceManager.DEFAULT_MULTI_DEVICE_TIMEOUT_MS,
+                null, (isSuccess, error) -> refreshDevices());
     }
 
     private void showSelectDevicesDialog() {
@@ -1152,15 +1176,19 @@ public class DeviceScreen extends BaseScreen implements DeviceManager.DeviceList
         inputViewMap.remove(serial);
     }
 
+    /**
+     * show logs for selectedDevice; if null, logs for selected devices are shown (merged when more than 1 is selected)
+     */
     public void handleLogsCommand(Device selectedDevice) {
-        if (selectedDevice == null) selectedDevice = getFirstSelectedDevice();
-        if (selectedDevice == null) return;
+        List<Device> deviceList = selectedDevice != null ? List.of(selectedDevice) : getSelectedDevices();
+        if (deviceList.isEmpty()) return;
 
-        LogsScreen logsScreen = logsViewMap.get(selectedDevice.serial);
+        String key = LogsScreen.getKey(deviceList);
+        LogsScreen logsScreen = logsViewMap.get(key);
         if (logsScreen == null) {
-            if (!selectedDevice.isOnline) return;
-            logsScreen = new LogsScreen(this, selectedDevice);
-            logsViewMap.put(selectedDevice.serial, logsScreen);
+            if (deviceList.stream().noneMatch(device -> device.isOnline)) return;
+            logsScreen = new LogsScreen(this, deviceList);
+            logsViewMap.put(key, logsScreen);
         }
         logsScreen.show();
     }
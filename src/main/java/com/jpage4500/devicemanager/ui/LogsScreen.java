@@ -4,7 +4,12 @@ import com.jpage4500.devicemanager.data.Device;
 import com.jpage4500.devicemanager.data.FilterItem;
 import com.jpage4500.devicemanager.data.LogEntry;
 import com.jpage4500.devicemanager.data.LogFilter;
+import com.jpage4500.devicemanager.data.LogcatFilterSpec;
 import com.jpage4500.devicemanager.manager.DeviceManager;
+import com.jpage4500.devicemanager.manager.LogBuffer;
+import com.jpage4500.devicemanager.manager.LogCursor;
+import com.jpage4500.devicemanager.manager.LogMerger;
+import com.jpage4500.devicemanager.table.LogIndex;
 import com.jpage4500.devicemanager.table.LogsTableModel;
 import com.jpage4500.devicemanager.table.utils.LogsCellRenderer;
 import com.jpage4500.devicemanager.table.utils.LogsRowSorter;
@@ -26,21 +31,36 @@ import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * create and manage device view
  */
-public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogListener {
+public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogListener, LogMerger.MergedLogListener {
     private static final Logger log = LoggerFactory.getLogger(LogsScreen.class);
 
     private static final String HINT_FILTER = "Filter...";
     private static final String HINT_SEARCH = "Search...";
+    // wait for user to stop typing before restarting logs with a new device filter
+    private static final int DEVICE_FILTER_DELAY_MS = 1000;
 
     private final Device device;
+    // all devices shown; more than 1 when logs from multiple devices are merged
+    private final List<Device> deviceList;
+    // merges logs when showing multiple devices; null otherwise
+    private final LogMerger merger;
+    // serial -> where logging stopped; used to resume without reading the same entries again
+    private final Map<String, LogCursor> cursorMap = new HashMap<>();
     private final DeviceScreen deviceScreen;
 
     public CustomTable table;
@@ -57,29 +77,56 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
     private int numSystemFilters;
 
     private LogsRowSorter sorter;
+    // logcat args used to filter logs on device (see LogcatFilterSpec)
+    private List<String> deviceFilterArgs = List.of();
+    // restarts logging with new device filter once user stops typing
+    private Timer deviceFilterTimer;
     private MessageViewScreen viewScreen;
 
     public JButton logButton;
     public boolean isLoggedPaused; // true when user clicks on 'stop logging'
 
     public LogsScreen(DeviceScreen deviceScreen, Device device) {
-        super("logs-" + device.serial, 1100, 800);
+        this(deviceScreen, List.of(device));
+    }
+
+    /**
+     * @param deviceList more than 1 device to show merged logs ordered by time
+     */
+    public LogsScreen(DeviceScreen deviceScreen, List<Device> deviceList) {
+        super("logs-" + getKey(deviceList), 1100, 800);
         this.deviceScreen = deviceScreen;
-        this.device = device;
+        this.deviceList = deviceList;
+        this.device = deviceList.get(0);
+        merger = deviceList.size() > 1 ? new LogMerger(this) : null;
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         initalizeUi();
         updateDeviceState();
     }
 
+    /**
+     * @return unique key for a set of devices (ie: "serial1+serial2")
+     */
+    public static String getKey(List<Device> deviceList) {
+        return deviceList.stream().map(d -> d.serial).collect(Collectors.joining("+"));
+    }
+
+    public boolean hasDevice(Device device) {
+        for (Device d : deviceList) {
+            if (TextUtils.equals(d.serial, device.serial)) return true;
+        }
+        return false;
+    }
+
     public void updateDeviceState() {
         //log.trace("updateDeviceState: ONLINE:{}", device.isOnline);
-        if (device.isOnline) {
-            setTitle("Logs: [" + device.getDisplayName() + "]");
-            startLogging();
-        } else {
-            setTitle("OFFLINE [" + device.getDisplayName() + "]");
-            stopLogging();
+        String names = deviceList.stream().map(Device::getDisplayName).collect(Collectors.joining(", "));
+        boolean isAnyOnline = deviceList.stream().anyMatch(d -> d.isOnline);
+        setTitle(isAnyOnline ? "Logs: [" + names + "]" : "OFFLINE [" + names + "]");
+        for (Device d : deviceList) {
+            if (!d.isOnline) DeviceManager.getInstance().stopLogging(d, getListener(d));
         }
+        if (isAnyOnline) startLogging();
     }
 
     protected void initalizeUi() {
@@ -115,7 +162,7 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
         JPanel rightPanel = new JPanel(new BorderLayout());
 
         // -- table --
-        table = new CustomTable("logs");
+        table = new CustomTable(merger != null ? "logs-merged" : "logs");
         setupTable();
         rightPanel.add(table.getScrollPane(), BorderLayout.CENTER);
 
@@ -213,6 +260,9 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
             table.scrollToTop();
         });
 
+        // [CMD + G] = go to time
+        createCmdAction(logsMenu, "Go to Time...", KeyEvent.VK_G, e -> handleGoToTime());
+
         JMenu editMenu = new JMenu("Edit");
 
         // [CMD + KEY_DOWN] = scroll to bottom
@@ -266,8 +316,11 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
         String filterText = filterField.getCleanText();
         PreferenceUtils.setPreference(PreferenceUtils.Pref.PREF_RECENT_MESSAGE_FILTER, filterText);
         //stopLogging();
-        deviceScreen.handleLogsClosed(device.serial);
+        deviceScreen.handleLogsClosed(getKey(deviceList));
+        if (merger != null) merger.stop();
+        if (deviceFilterTimer != null) deviceFilterTimer.stop();
         dispose();
+        model.close();
     }
 
     private void hideToolbar() {
@@ -275,7 +328,7 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
     }
 
     private void setupTable() {
-        model = new LogsTableModel();
+        model = new LogsTableModel(getKey(deviceList), merger != null);
         table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         table.setModel(model);
         table.setDefaultRenderer(LogEntry.class, new LogsCellRenderer());
@@ -396,6 +449,7 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
         });
 
         sorter = new LogsRowSorter(model);
+        sorter.setFilterListener(this::refreshUi);
         table.setRowSorter(sorter);
 
         table.setDoubleClickListener((row, column, e) -> {
@@ -433,7 +487,7 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
         StringBuilder sb = new StringBuilder();
         for (LogEntry logEntry : logEntryList) {
             if (!sb.isEmpty()) sb.append("\n");
-            sb.append(logEntry.message);
+            sb.append(logEntry.getMessage());
         }
         if (sb.isEmpty()) return;
 
@@ -447,7 +501,7 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
         StringBuilder sb = new StringBuilder();
         for (LogEntry logEntry : logEntryList) {
             if (!sb.isEmpty()) sb.append("\n");
-            sb.append(logEntry.date);
+            sb.append(logEntry.getDate());
             sb.append(", ");
             sb.append(logEntry.app);
             sb.append(", ");
@@ -459,7 +513,7 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
             sb.append(", ");
             sb.append(logEntry.tag);
             sb.append(", ");
-            sb.append(logEntry.message);
+            sb.append(logEntry.getMessage());
         }
         if (sb.isEmpty()) return;
 
@@ -503,19 +557,87 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
     }
 
     private void stopLogging() {
-        DeviceManager.getInstance().stopLogging(device);
+        for (Device d : deviceList) {
+            DeviceManager.getInstance().stopLogging(d, getListener(d));
+        }
     }
 
     private void startLogging() {
-        if (device.isOnline && !DeviceManager.getInstance().isLogging(device)) {
+        for (Device d : deviceList) {
+            DeviceManager.DeviceLogListener listener = getListener(d);
+            if (d.isOnline && !DeviceManager.getInstance().isLogging(d, listener)) {
+                DeviceManager.getInstance().startLogging(d, getCursor(d), deviceFilterArgs, listener);
+            }
+        }
+    }
+
+    /**
+     * @return listener this window logs device with (sessions are per device AND listener)
+     */
+    private DeviceManager.DeviceLogListener getListener(Device device) {
+        return merger != null ? merger.getListener(device) : this;
+    }
+
+    /**
+     * @return position to resume logging device from
+     */
+    private LogCursor getCursor(Device device) {
+        return cursorMap.computeIfAbsent(device.serial, serial -> {
             Long startTime = model.getLastLogTime();
             if (startTime == null) {
                 // by default only display logs from the last few hours
                 // - can speed up initial launch
                 startTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2);
             }
-            DeviceManager.getInstance().startLogging(device, startTime, this);
+            return new LogCursor(startTime);
+        });
+    }
+
+    /**
+     * restart logging if filters that can run on the device changed (ie: "level:W+" -> "logcat *:W")
+     * - lines are still filtered here too; device only drops lines that wouldn't be shown
+     * - NOTE: lines dropped on device aren't fetched again if the filter is removed later
+     */
+    private void updateDeviceFilter() {
+        List<String> args = List.of();
+        if (PreferenceUtils.getPreference(PreferenceUtils.PrefBoolean.PREF_LOG_FILTER_ON_DEVICE, true)) {
+            args = LogcatFilterSpec.getArgs(sorter.getFilter());
         }
+        if (args.equals(deviceFilterArgs)) return;
+        log.debug("updateDeviceFilter: {} -> {}", deviceFilterArgs, args);
+        deviceFilterArgs = args;
+        if (!isLoggedPaused) {
+            stopLogging();
+            startLogging();
+        }
+    }
+
+    /**
+     * prompt for a time of day (HH:mm:ss) and scroll to the first row logged at or after it
+     * - time is on the same day as the last row (or the day before if that time hasn't happened yet)
+     */
+    private void handleGoToTime() {
+        Long lastTime = model.getLastLogTime();
+        if (lastTime == null) return;
+        String text = JOptionPane.showInputDialog(this, "Enter time (HH:mm:ss)", "Go to Time", JOptionPane.QUESTION_MESSAGE);
+        if (TextUtils.isEmpty(text)) return;
+        LocalTime time;
+        try {
+            time = LocalTime.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(this, "Invalid time: " + text);
+            return;
+        }
+        ZonedDateTime lastDate = Instant.ofEpochMilli(lastTime).atZone(ZoneId.systemDefault());
+        ZonedDateTime date = lastDate.with(time);
+        if (date.isAfter(lastDate)) date = date.minusDays(1);
+
+        int viewRow = sorter.convertRowIndexToViewAtOrAfter(model.findRow(date.toInstant().toEpochMilli()));
+        log.trace("handleGoToTime: {} -> {}", date, viewRow);
+        if (viewRow >= table.getRowCount()) return;
+        autoScrollCheckBox.setSelected(false);
+        table.setRowSelectionInterval(viewRow, viewRow);
+        table.scrollRectToVisible(table.getCellRect(viewRow, 0, true));
     }
 
     private void scrollToFollow() {
@@ -536,6 +658,22 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
                 msg += " / " + totalRows;
             }
         }
+        int progress = sorter.getFilterProgress();
+        if (progress >= 0) {
+            msg += " (filtering " + progress + "%)";
+        }
+        LogBuffer.Stats stats = null;
+        for (Device d : deviceList) {
+            LogBuffer.Stats deviceStats = DeviceManager.getInstance().getLogStats(d, getListener(d));
+            if (deviceStats == null) continue;
+            if (stats == null) stats = deviceStats;
+            else stats = new LogBuffer.Stats(stats.numRead + deviceStats.numRead, stats.numRendered + deviceStats.numRendered,
+                    stats.numDropped + deviceStats.numDropped);
+        }
+        if (stats != null) {
+            // read:X, rendered:Y, dropped:Z
+            msg += " | " + stats;
+        }
         statusBar.setLeftLabel(msg);
     }
 
@@ -667,40 +805,57 @@ public class LogsScreen extends BaseScreen implements DeviceManager.DeviceLogLis
             sb.append(item.name);
         }
 
+        LogIndex.Query searchQuery = null;
         if (TextUtils.notEmpty(text)) {
-            LogFilter searchFilter;
-            if (TextUtils.indexOf(text, ':') >= 0) {
-                searchFilter = LogFilter.parse(text);
+            // plain words (no column or operators) are looked up in the token index
+            if (isPlainText(text)) searchQuery = LogIndex.parse(text);
+            if (searchQuery != null) {
+                log.debug("filterDevices: search: {}", searchQuery);
             } else {
-                searchFilter = LogFilter.parse("*:*" + text + "*");
+                LogFilter searchFilter = LogFilter.parse(text);
+                log.debug("filterDevices: {}", searchFilter);
+                list.add(searchFilter);
             }
-            log.debug("filterDevices: {}", searchFilter);
-            list.add(searchFilter);
             if (!sb.isEmpty()) sb.append(" && ");
             sb.append(text);
         }
 
-        sorter.setFilter(list.toArray(new LogFilter[0]));
+        sorter.setFilter(searchQuery, list.toArray(new LogFilter[0]));
+        if (deviceFilterTimer == null) {
+            deviceFilterTimer = new Timer(DEVICE_FILTER_DELAY_MS, e -> updateDeviceFilter());
+            deviceFilterTimer.setRepeats(false);
+        }
+        deviceFilterTimer.restart();
 
         // TODO: set label
         statusBar.setCenterLabel(sb.toString());
-        model.fireTableDataChanged();
+    }
+
+    /**
+     * @return true if text doesn't contain any filter syntax (column, operators, quotes, wildcards)
+     */
+    private static boolean isPlainText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (":&|!()\"*".indexOf(text.charAt(i)) >= 0) return false;
+        }
+        return true;
     }
 
     @Override
     public void handleLogEntries(List<LogEntry> logEntryList) {
-        // save log entries as they'll get cleared after this method returns
-        List<LogEntry> logList = new ArrayList<>(logEntryList);
-        SwingUtilities.invokeLater(() -> {
-            model.addLogEntry(logList);
-            scrollToFollow();
-            refreshUi();
-        });
+        model.addLogEntry(logEntryList);
+        scrollToFollow();
+        refreshUi();
+    }
+
+    @Override
+    public void handleProcessMap(Map<Integer, String> processMap) {
+        SwingUtilities.invokeLater(() -> model.addProcesses(null, processMap));
     }
 
     @Override
-    public void handleProcessMap(Map<String, String> processMap) {
-        SwingUtilities.invokeLater(() -> model.setProcessMap(processMap));
+    public void handleProcessMap(String device, Map<Integer, String> processMap) {
+        SwingUtilities.invokeLater(() -> model.addProcesses(device, processMap));
     }
 
 }
@@ -151,7 +151,7 @@ public class MessageViewScreen extends BaseScreen {
         StringBuilder msg = new StringBuilder();
         for (LogEntry logEntry : logEntryArr) {
             if (!msg.isEmpty()) msg.append("\n");
-            msg.append(logEntry.message);
+            msg.append(logEntry.getMessage());
         }
         return msg.toString();
     }
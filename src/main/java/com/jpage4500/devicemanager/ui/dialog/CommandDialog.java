@@ -30,6 +30,9 @@ public class CommandDialog extends JPanel {
 
     private HoverLabel resultsLabel;
     private String resultsMsg;
+    private JButton cancelButton;
+    // last command sent; can be cancelled while running
+    private DeviceManager.MultiDeviceTask task;
 
     public static void showCommandDialog(Component frame, List<Device> selectedDeviceList) {
         CommandDialog screen = new CommandDialog(selectedDeviceList);
@@ -104,9 +107,16 @@ public class CommandDialog extends JPanel {
         resultsLabel.addActionListener(e -> handleResultsClicked());
         add(resultsLabel, "span 2, wrap");
 
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> {
+            if (task != null) task.cancel();
+        });
+        add(cancelButton, "newline, al right, span 2, split 2");
+
         JButton sendButton = new JButton("Send Command");
         sendButton.addActionListener(e -> handleEnterPressed());
-        add(sendButton, "newline, al right, span 2, wrap");
+        add(sendButton, "wrap");
 
     }
 
@@ -168,12 +178,13 @@ public class CommandDialog extends JPanel {
             resultsLabel.setText(msg);
             resultsMsg = error;
         });
-        for (Device device : selectedDeviceList) {
-            DeviceManager.getInstance().runCustomCommand(device, command, (isSuccess, error) -> {
-                String result = "DEVICE: " + device.getDisplayName() + ":\n" + error;
-                resultWatcher.handleResult(isSuccess, result);
-            });
-        }
+        task = DeviceManager.getInstance().runOnDevices(selectedDeviceList, command,
+                DeviceManager.DEFAULT_MULTI_DEVICE_CONCURRENCY, DeviceManager.DEFAULT_MULTI_DEVICE_TIMEOUT_MS,
+                (device, isSuccess, result) -> {
+                    String msg = "DEVICE: " + device.getDisplayName() + ":\n" + result;
+                    resultWatcher.handleResult(isSuccess, msg);
+                }, (isSuccess, error) -> SwingUtilities.invokeLater(() -> cancelButton.setEnabled(!task.isDone())));
+        cancelButton.setEnabled(!task.isDone());
     }
 
     private void populateRecent() {
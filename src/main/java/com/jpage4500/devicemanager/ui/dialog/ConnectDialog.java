@@ -67,19 +67,10 @@ public class ConnectDialog extends JPanel {
 
         add(new JLabel("Recent Devices"), "growx, span 2, wrap");
 
-        List<Device> connectedDeviceList = DeviceManager.getInstance().getDevices();
-
         DefaultListModel<String> listModel = new DefaultListModel<>();
         for (WirelessDevice device : recentDeviceList) {
             // only show devices that aren't currently connected
-            boolean isConnected = false;
-            for (Device connectedDevice : connectedDeviceList) {
-                if (connectedDevice.serial.equals(device.serial)) {
-                    isConnected = true;
-                    break;
-                }
-            }
-            if (isConnected) continue;
+            if (DeviceManager.getInstance().getDevice(device.serial) != null) continue;
 
             listModel.addElement(device.model + " - " + device.serial);
         }
@@ -2,7 +2,9 @@ package com.jpage4500.devicemanager.ui.dialog;
 
 import com.jpage4500.devicemanager.logging.AppLoggerFactory;
 import com.jpage4500.devicemanager.logging.Log;
+import com.jpage4500.devicemanager.manager.LogBuffer;
 import com.jpage4500.devicemanager.table.DeviceTableModel;
+import com.jpage4500.devicemanager.table.LogFileStore;
 import com.jpage4500.devicemanager.ui.DeviceScreen;
 import com.jpage4500.devicemanager.ui.views.CheckBoxList;
 import com.jpage4500.devicemanager.utils.GsonHelper;
@@ -47,6 +49,13 @@ public class SettingsDialog extends JPanel {
             // force table background to be repainted
             deviceScreen.model.fireTableDataChanged();
         });
+        addCheckbox("Binary logcat (faster)", PreferenceUtils.PrefBoolean.PREF_BINARY_LOGCAT, false, null);
+        addCheckbox("Save log history to disk", PreferenceUtils.PrefBoolean.PREF_LOG_HISTORY_ON_DISK, false, null);
+        addComboBox("Log history size (per window)", PreferenceUtils.Pref.PREF_LOG_HISTORY_SIZE, LogFileStore.HistorySize.values(),
+                LogFileStore.getHistorySize(PreferenceUtils.getPreference(PreferenceUtils.Pref.PREF_LOG_HISTORY_SIZE)));
+        addCheckbox("Filter logs on device", PreferenceUtils.PrefBoolean.PREF_LOG_FILTER_ON_DEVICE, true, null);
+        addComboBox("When logs fall behind", PreferenceUtils.Pref.PREF_LOG_OVERFLOW_POLICY, LogBuffer.OverflowPolicy.values(),
+                LogBuffer.getOverflowPolicy(PreferenceUtils.getPreference(PreferenceUtils.Pref.PREF_LOG_OVERFLOW_POLICY)));
         addCheckbox("Debug Mode", PreferenceUtils.PrefBoolean.PREF_DEBUG_MODE, false, isChecked -> {
             AppLoggerFactory logger = (AppLoggerFactory) LoggerFactory.getILoggerFactory();
             logger.setFileLogLevel(isChecked ? Log.DEBUG : Log.INFO);
@@ -108,6 +117,19 @@ public class SettingsDialog extends JPanel {
 
     }
 
+    private void addComboBox(String label, PreferenceUtils.Pref pref, Enum<?>[] values, Enum<?> currentValue) {
+        add(new JLabel(label));
+
+        JComboBox<Enum<?>> comboBox = new JComboBox<>(values);
+        comboBox.setSelectedItem(currentValue);
+        add(comboBox, "wrap");
+
+        comboBox.addActionListener(actionEvent -> {
+            Enum<?> selected = (Enum<?>) comboBox.getSelectedItem();
+            if (selected != null) PreferenceUtils.setPreference(pref, selected.name());
+        });
+    }
+
     private void resetPreferences() {
         int rc = JOptionPane.showConfirmDialog(this, "Reset All Preferences?", "Reset Preferences", JOptionPane.YES_NO_OPTION);
         if (rc != JOptionPane.YES_OPTION) return;
@@ -0,0 +1,66 @@
+package com.jpage4500.devicemanager.utils;
+
+import java.util.Arrays;
+
+/**
+ * case-insensitive substring search (Boyer-Moore-Horspool)
+ * - needle is case-folded once; only the text is folded while searching
+ * - use when the same text is searched for many times (ie: filtering logs)
+ */
+public class IgnoreCaseSearch {
+    private final char[] needle;
+    // shift for ASCII chars; any other char uses nonAsciiShift
+    private final int[] shiftArr = new int[128];
+    private final int nonAsciiShift;
+
+    public IgnoreCaseSearch(String searchText) {
+        int len = searchText.length();
+        needle = new char[len];
+        for (int i = 0; i < len; i++) {
+            needle[i] = fold(searchText.charAt(i));
+        }
+        Arrays.fill(shiftArr, Math.max(len, 1));
+        int shift = Math.max(len, 1);
+        for (int i = 0; i < len - 1; i++) {
+            char c = needle[i];
+            if (c < 128) shiftArr[c] = len - 1 - i;
+            else shift = Math.min(shift, len - 1 - i);
+        }
+        nonAsciiShift = shift;
+    }
+
+    /**
+     * @return position of search text in text or -1 if not found
+     */
+    public int indexOf(String text) {
+        if (text == null) return -1;
+        int len = needle.length;
+        if (len == 0) return 0;
+        char last = needle[len - 1];
+        int textLen = text.length();
+        int i = len - 1;
+        while (i < textLen) {
+            char c = fold(text.charAt(i));
+            if (c == last) {
+                int j = len - 2;
+                int k = i - 1;
+                while (j >= 0 && fold(text.charAt(k)) == needle[j]) {
+                    j--;
+                    k--;
+                }
+                if (j < 0) return i - len + 1;
+            }
+            i += c < 128 ? shiftArr[c] : nonAsciiShift;
+        }
+        return -1;
+    }
+
+    public boolean contains(String text) {
+        return indexOf(text) >= 0;
+    }
+
+    private static char fold(char c) {
+        if (c < 128) return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
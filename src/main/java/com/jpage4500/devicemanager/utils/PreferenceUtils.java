@@ -23,6 +23,8 @@ public class PreferenceUtils {
         PREF_RECENT_INPUT,
         PREF_RECENT_MESSAGE_FILTER,
         PREF_MESSAGE_FILTERS,
+        PREF_LOG_OVERFLOW_POLICY,
+        PREF_LOG_HISTORY_SIZE,
     }
 
     /**
@@ -37,6 +39,9 @@ public class PreferenceUtils {
         PREF_AUTO_FORMAT_MESSAGE,
         PREF_WRAP_MESSAGE,
         PREF_EXIT_TO_TRAY,
+        PREF_BINARY_LOGCAT,
+        PREF_LOG_HISTORY_ON_DISK,
+        PREF_LOG_FILTER_ON_DEVICE,
     }
 
     /**
@@ -0,0 +1,45 @@
+package com.jpage4500.devicemanager.utils;
+
+/**
+ * counts events in fixed 1-minute windows
+ */
+public class RateCounter {
+    private static final long WINDOW_MS = 60 * 1000;
+
+    private long windowStartMs = System.currentTimeMillis();
+    private long count;
+    private long lastWindowCount;
+    private long total;
+
+    public synchronized void increment() {
+        roll(System.currentTimeMillis());
+        count++;
+        total++;
+    }
+
+    /**
+     * @return number of events in the last full minute
+     */
+    public synchronized long getPerMinute() {
+        roll(System.currentTimeMillis());
+        return lastWindowCount;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    private void roll(long now) {
+        long elapsed = now - windowStartMs;
+        if (elapsed < WINDOW_MS) return;
+        // previous window is empty if more than 1 window passed without any events
+        lastWindowCount = elapsed < WINDOW_MS * 2 ? count : 0;
+        count = 0;
+        windowStartMs = now - (elapsed % WINDOW_MS);
+    }
+
+    @Override
+    public String toString() {
+        return getPerMinute() + "/min, total:" + getTotal();
+    }
+}
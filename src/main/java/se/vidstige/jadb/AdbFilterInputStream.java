@@ -3,45 +3,118 @@ package se.vidstige.jadb;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
+/**
+ * Converts "\r\n" to "\n" in shell output. Reads from the underlying stream in blocks and compacts each block in
+ * place; a block ending in '\r' is extended until the next byte is known so pairs split across reads are handled.
+ */
 public class AdbFilterInputStream extends FilterInputStream {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean isEof;
+
     public AdbFilterInputStream(InputStream inputStream) {
         super(inputStream);
     }
 
-    @Override
-    public int read() throws IOException {
-        int b1 = in.read();
-        if (b1 == 0x0d) {
-            in.mark(1);
-            int b2 = in.read();
-            if (b2 == 0x0a) {
-                return b2;
+    /**
+     * make sure filtered bytes are available in buffer
+     *
+     * @return false at end of stream
+     */
+    private boolean fill() throws IOException {
+        while (pos >= limit) {
+            if (isEof) return false;
+            pos = 0;
+            limit = 0;
+            int n = in.read(buffer, 0, buffer.length);
+            if (n == -1) {
+                isEof = true;
+                return false;
             }
-            in.reset();
+            int end = n;
+            // a trailing '\r' needs the next byte to decide if it's part of a "\r\n" pair
+            while (end > 0 && buffer[end - 1] == 0x0d) {
+                int next = in.read();
+                if (next == -1) {
+                    isEof = true;
+                    break;
+                }
+                if (end == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                buffer[end++] = (byte) next;
+            }
+            limit = compact(end);
+        }
+        return true;
+    }
+
+    /**
+     * remove '\r' from every "\r\n" pair in buffer[0..end)
+     *
+     * @return new length
+     */
+    private int compact(int end) {
+        int write = 0;
+        for (int read = 0; read < end; read++) {
+            byte b = buffer[read];
+            if (b == 0x0d && read + 1 < end && buffer[read + 1] == 0x0a) continue;
+            buffer[write++] = b;
         }
-        return b1;
+        return write;
     }
 
     @Override
-    public int read(byte[] buffer, int offset, int length) throws IOException {
-        int n = 0;
-        for (int i = 0; i < length; i++) {
-            int b = read();
-            if (b == -1) return n == 0 ? -1 : n;
-            buffer[offset + n] = (byte) b;
-            n++;
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return buffer[pos++] & 0xff;
+    }
 
-            // Return as soon as no more data is available (and at least one byte was read)
-            if (in.available() <= 0) {
-                return n;
-            }
-        }
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(length, limit - pos);
+        System.arraycopy(buffer, pos, b, offset, n);
+        pos += n;
         return n;
     }
 
     @Override
-    public int read(byte[] buffer) throws IOException {
-        return read(buffer, 0, buffer.length);
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int count = (int) Math.min(n - skipped, limit - pos);
+            pos += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (limit - pos) + (isEof ? 0 : in.available());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
     }
 }
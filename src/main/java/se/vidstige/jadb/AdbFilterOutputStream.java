@@ -10,12 +10,27 @@ public class AdbFilterOutputStream extends LookBackFilteringOutputStream {
 
     @Override
     public void write(int c) throws IOException {
-        if (!lookback().isEmpty()) {
-            Byte last = lookback().getFirst();
-            if (last != null && last == 0x0d && c == 0x0a) {
-                unwrite();
-            }
+        if (c == 0x0a && lookbackSize() > 0 && lookback(0) == 0x0d) {
+            unwrite();
         }
         super.write(c);
     }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        int start = off;
+        for (int i = off; i < end; i++) {
+            if (b[i] != 0x0a) continue;
+            if (i == start) {
+                // '\r' (if any) was written by a previous call and is still held back
+                if (lookbackSize() > 0 && lookback(0) == 0x0d) unwrite();
+            } else if (b[i - 1] == 0x0d) {
+                // write everything before the '\r' and continue from the '\n'
+                super.write(b, start, i - 1 - start);
+                start = i;
+            }
+        }
+        super.write(b, start, end - start);
+    }
 }
@@ -3,7 +3,7 @@ package se.vidstige.jadb;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,6 +14,8 @@ public class JadbConnection implements ITransportFactory {
 
     private static final int DEFAULTPORT = 5037;
 
+    private volatile TransportPool transportPool;
+
     public JadbConnection() {
         this("localhost", DEFAULTPORT);
     }
@@ -23,8 +25,38 @@ public class JadbConnection implements ITransportFactory {
         this.port = port;
     }
 
+    /**
+     * NOTE: sockets are created through SocketChannel (zero-copy sync transfers, non-blocking pool checks); as with any
+     * InterruptibleChannel, interrupting a thread that's blocked on the socket closes it. Stop a running command by
+     * closing its stream instead of interrupting the thread (ie: Future.cancel(true)) unless the socket should be closed too
+     */
     public Transport createTransport() throws IOException {
-        return new Transport(new Socket(host, port));
+        TransportPool pool = transportPool;
+        if (pool != null) return pool.createTransport();
+        return new Transport(SocketChannel.open(new InetSocketAddress(host, port)).socket());
+    }
+
+    /**
+     * keep up to maxIdle sockets connected to the adb server ahead of time
+     *
+     * @param maxIdleTimeMs idle sockets older than this are discarded
+     */
+    public synchronized void enableTransportPool(int maxIdle, long maxIdleTimeMs) {
+        if (transportPool != null) transportPool.close();
+        transportPool = new TransportPool(host, port, maxIdle, maxIdleTimeMs);
+    }
+
+    public synchronized void disableTransportPool() {
+        if (transportPool == null) return;
+        transportPool.close();
+        transportPool = null;
+    }
+
+    /**
+     * @return transport pool or null if pooling isn't enabled
+     */
+    public TransportPool getTransportPool() {
+        return transportPool;
     }
 
     public String getHostVersion() throws IOException, JadbException {
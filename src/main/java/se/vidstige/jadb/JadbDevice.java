@@ -5,6 +5,10 @@ import se.vidstige.jadb.managers.Bash;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -107,7 +111,7 @@ public class JadbDevice {
         Transport transport = getTransport();
         StringBuilder shellLine = buildCmdLine(command, args);
         send(transport, "shell:" + shellLine.toString());
-        return new AdbFilterInputStream(new BufferedInputStream(transport.getInputStream()));
+        return new AdbFilterInputStream(transport.getInputStream());
     }
 
     /**
@@ -217,6 +221,23 @@ public class JadbDevice {
         }
     }
 
+    /**
+     * push a local file using FileChannel so payload doesn't need to be copied through the java heap
+     */
+    public void push(Path local, RemoteFile remote) throws IOException, JadbException {
+        long lastModified = TimeUnit.MILLISECONDS.toSeconds(Files.getLastModifiedTime(local).toMillis());
+        try (FileChannel fileChannel = FileChannel.open(local, StandardOpenOption.READ);
+             Transport transport = getTransport()) {
+            SyncTransport sync = transport.startSync();
+            sync.send("SEND", remote.getPath() + "," + DEFAULT_MODE);
+
+            sync.sendFile(fileChannel);
+
+            sync.sendStatus("DONE", (int) lastModified);
+            sync.verifyStatus();
+        }
+    }
+
     public void pull(RemoteFile remote, OutputStream destination) throws IOException, JadbException {
         try (Transport transport = getTransport()) {
             SyncTransport sync = transport.startSync();
@@ -232,6 +253,19 @@ public class JadbDevice {
         }
     }
 
+    /**
+     * pull a remote file using FileChannel so payload doesn't need to be copied through the java heap
+     */
+    public void pull(RemoteFile remote, Path local) throws IOException, JadbException {
+        try (FileChannel fileChannel = FileChannel.open(local, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Transport transport = getTransport()) {
+            SyncTransport sync = transport.startSync();
+            sync.send("RECV", remote.getPath());
+
+            sync.readChunksTo(fileChannel);
+        }
+    }
+
     public BufferedImage screencap() throws IOException, JadbException {
         InputStream stdout = this.execute("screencap", "-p");
         return ImageIO.read(stdout);
@@ -3,31 +3,83 @@ package se.vidstige.jadb;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayDeque;
 
+/**
+ * Holds back the last few written bytes so subclasses can look at (and un-write) them before they reach the
+ * underlying stream. The look-back window is a primitive ring buffer.
+ */
 public class LookBackFilteringOutputStream extends FilterOutputStream {
-    private final ArrayDeque<Byte> buffer;
+    private final byte[] buffer;
     private final int lookBackBufferSize;
+    // index of oldest byte in buffer
+    private int head;
+    // number of bytes in buffer
+    private int count;
 
     protected LookBackFilteringOutputStream(OutputStream inner, int lookBackBufferSize)
     {
         super(inner);
         this.lookBackBufferSize = lookBackBufferSize;
-        this.buffer = new ArrayDeque<>(lookBackBufferSize);
+        this.buffer = new byte[Math.max(1, lookBackBufferSize)];
     }
 
+    /**
+     * drop the most recently written byte that is still in the look-back window
+     */
     protected void unwrite() {
-        buffer.removeFirst();
+        if (count == 0) throw new IllegalStateException("nothing to unwrite");
+        count--;
     }
 
-    protected ArrayDeque<Byte> lookback() {
-        return buffer;
+    /**
+     * @return number of bytes in the look-back window
+     */
+    protected int lookbackSize() {
+        return count;
+    }
+
+    /**
+     * @param index 0 for the most recently written byte, 1 for the one before, ..
+     */
+    protected byte lookback(int index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException(index);
+        return buffer[(head + count - 1 - index) % buffer.length];
     }
 
     @Override
     public void write(int c) throws IOException {
-        buffer.addLast((byte) c);
-        flushBuffer(lookBackBufferSize);
+        if (count == buffer.length) {
+            out.write(buffer[head]);
+            head = (head + 1) % buffer.length;
+            count--;
+        }
+        buffer[(head + count) % buffer.length] = (byte) c;
+        count++;
+        if (count > lookBackBufferSize) flushBuffer(lookBackBufferSize);
+    }
+
+    /**
+     * append bytes to the look-back window; anything pushed out of the window is written through in bulk
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len <= 0) return;
+        int overflow = count + len - lookBackBufferSize;
+        if (overflow > 0) {
+            // oldest bytes come from the window first, then from the start of b
+            int fromBuffer = Math.min(overflow, count);
+            flushBuffer(count - fromBuffer);
+            int fromInput = overflow - fromBuffer;
+            if (fromInput > 0) {
+                out.write(b, off, fromInput);
+                off += fromInput;
+                len -= fromInput;
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            buffer[(head + count) % buffer.length] = b[off + i];
+            count++;
+        }
     }
 
     @Override
@@ -36,10 +88,16 @@ public class LookBackFilteringOutputStream extends FilterOutputStream {
         out.flush();
     }
 
+    /**
+     * write oldest bytes until only size remain in the look-back window
+     */
     private void flushBuffer(int size) throws IOException {
-        while (buffer.size() > size) {
-            Byte b = buffer.removeFirst();
-            out.write(b);
+        while (count > size) {
+            // write contiguous run up to end of array
+            int n = Math.min(count - size, buffer.length - head);
+            out.write(buffer, head, n);
+            head = (head + n) % buffer.length;
+            count -= n;
         }
     }
 }
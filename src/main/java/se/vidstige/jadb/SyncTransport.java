@@ -1,6 +1,11 @@
 package se.vidstige.jadb;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -8,12 +13,30 @@ import java.nio.charset.StandardCharsets;
  */
 public class SyncTransport {
 
+    // max payload of a single DATA chunk supported by adbd
+    private static final int MAX_CHUNK_SIZE = 64 * 1024;
+    private static final byte[] DATA = "DATA".getBytes(StandardCharsets.US_ASCII);
+
     private final DataOutput output;
     private final DataInput input;
+    private final ReadableByteChannel readChannel;
+    private final WritableByteChannel writeChannel;
+    // reusable header buffer: 4 byte id + little-endian length
+    private ByteBuffer header;
 
     public SyncTransport(DataOutput outputStream, DataInput inputStream) {
+        this(outputStream, inputStream, null, null);
+    }
+
+    /**
+     * @param readChannel  channel for the same connection as inputStream; used by {@link #readChunksTo(FileChannel)}
+     * @param writeChannel channel for the same connection as outputStream; used by {@link #sendFile(FileChannel)}
+     */
+    public SyncTransport(DataOutput outputStream, DataInput inputStream, ReadableByteChannel readChannel, WritableByteChannel writeChannel) {
         output = outputStream;
         input = inputStream;
+        this.readChannel = readChannel;
+        this.writeChannel = writeChannel;
     }
 
     public void send(String syncCommand, String name) throws IOException {
@@ -112,4 +135,65 @@ public class SyncTransport {
             n = readChunk(buffer);
         }
     }
+
+    private ByteBuffer getHeader() {
+        if (header == null) header = ByteBuffer.allocateDirect(8).order(ByteOrder.LITTLE_ENDIAN);
+        header.clear();
+        return header;
+    }
+
+    /**
+     * send file contents as DATA chunks; payload is copied from the file straight to the socket when possible
+     */
+    public void sendFile(FileChannel file) throws IOException {
+        if (writeChannel == null) throw new IllegalStateException("no channel available");
+        long size = file.size();
+        long position = 0;
+        while (position < size) {
+            int length = (int) Math.min(MAX_CHUNK_SIZE, size - position);
+            ByteBuffer buffer = getHeader();
+            buffer.put(DATA).putInt(length).flip();
+            while (buffer.hasRemaining()) {
+                writeChannel.write(buffer);
+            }
+            long sent = 0;
+            while (sent < length) {
+                long n = file.transferTo(position + sent, length - sent, writeChannel);
+                if (n <= 0) throw new EOFException("file truncated while sending");
+                sent += n;
+            }
+            position += length;
+        }
+    }
+
+    /**
+     * write DATA chunks into file until DONE is received; payload goes from the socket straight to the file when possible
+     */
+    public void readChunksTo(FileChannel file) throws IOException, JadbException {
+        if (readChannel == null) throw new IllegalStateException("no channel available");
+        long position = 0;
+        while (true) {
+            ByteBuffer buffer = getHeader();
+            while (buffer.hasRemaining()) {
+                if (readChannel.read(buffer) < 0) throw new EOFException();
+            }
+            buffer.flip();
+            byte[] idArr = new byte[4];
+            buffer.get(idArr);
+            String id = new String(idArr, StandardCharsets.US_ASCII);
+            int length = buffer.getInt();
+            if ("FAIL".equals(id)) {
+                throw new JadbException(readString(length));
+            }
+            if (!"DATA".equals(id)) break;
+
+            long received = 0;
+            while (received < length) {
+                long n = file.transferFrom(readChannel, position + received, length - received);
+                if (n <= 0) throw new EOFException();
+                received += n;
+            }
+            position += length;
+        }
+    }
 }
@@ -2,6 +2,10 @@ package se.vidstige.jadb;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 
 class Transport implements Closeable {
@@ -10,16 +14,19 @@ class Transport implements Closeable {
     private final InputStream inputStream;
     private final DataInputStream dataInput;
     private final DataOutputStream dataOutput;
+    // socket channel when available (socket created by SocketChannel); allows zero-copy file transfers
+    private final ByteChannel channel;
 
-    private Transport(OutputStream outputStream, InputStream inputStream) {
+    private Transport(OutputStream outputStream, InputStream inputStream, ByteChannel channel) {
         this.outputStream = outputStream;
         this.inputStream = inputStream;
         this.dataInput = new DataInputStream(inputStream);
         this.dataOutput = new DataOutputStream(outputStream);
+        this.channel = channel;
     }
 
     public Transport(Socket socket) throws IOException {
-        this(socket.getOutputStream(), socket.getInputStream());
+        this(socket.getOutputStream(), socket.getInputStream(), socket.getChannel());
     }
 
     public String readString() throws IOException {
@@ -64,7 +71,9 @@ class Transport implements Closeable {
     public SyncTransport startSync() throws IOException, JadbException {
         send("sync:");
         verifyResponse();
-        return new SyncTransport(dataOutput, dataInput);
+        ReadableByteChannel readChannel = channel != null ? channel : Channels.newChannel(inputStream);
+        WritableByteChannel writeChannel = channel != null ? channel : Channels.newChannel(outputStream);
+        return new SyncTransport(dataOutput, dataInput, readChannel, writeChannel);
     }
 
     @Override
@@ -0,0 +1,219 @@
+package se.vidstige.jadb;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a bounded set of pre-connected sockets to a single adb server so callers don't pay TCP connect latency
+ * for every command.
+ *
+ * <p>The adb server binds a connection to whatever service is requested on it ("host:transport:...", "shell:...")
+ * and closes it once a host query has been answered, so a socket can never be handed out twice. Instead the pool
+ * hands out sockets that were connected ahead of time and refills itself in the background. Idle sockets are
+ * health-checked before use and evicted once they have been idle longer than the configured time.</p>
+ */
+public class TransportPool implements ITransportFactory {
+    private final String host;
+    private final int port;
+    private final int maxIdle;
+    private final long maxIdleTimeMs;
+
+    private final ArrayDeque<IdleSocket> idleSockets;
+    private final ExecutorService refillExecutor;
+    private final AtomicBoolean isRefilling = new AtomicBoolean(false);
+    private volatile boolean isClosed;
+
+    // metrics
+    private final AtomicLong numCreated = new AtomicLong();
+    private final AtomicLong numReused = new AtomicLong();
+    private final AtomicLong numMissed = new AtomicLong();
+    private final AtomicLong numEvicted = new AtomicLong();
+    private final AtomicLong numUnhealthy = new AtomicLong();
+
+    private static class IdleSocket {
+        final Socket socket;
+        final long connectedMs;
+
+        IdleSocket(Socket socket) {
+            this.socket = socket;
+            this.connectedMs = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @param maxIdle       max number of pre-connected sockets to keep around
+     * @param maxIdleTimeMs sockets idle longer than this are closed instead of being used
+     */
+    public TransportPool(String host, int port, int maxIdle, long maxIdleTimeMs) {
+        this.host = host;
+        this.port = port;
+        this.maxIdle = maxIdle;
+        this.maxIdleTimeMs = maxIdleTimeMs;
+        this.idleSockets = new ArrayDeque<>(maxIdle);
+        this.refillExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "adb-transport-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Transport createTransport() throws IOException {
+        Socket socket = takeIdleSocket();
+        if (socket != null) {
+            numReused.incrementAndGet();
+        } else {
+            numMissed.incrementAndGet();
+            socket = connect();
+        }
+        scheduleRefill();
+        return new Transport(socket);
+    }
+
+    private Socket takeIdleSocket() {
+        while (true) {
+            IdleSocket idle;
+            synchronized (idleSockets) {
+                idle = idleSockets.pollFirst();
+            }
+            if (idle == null) return null;
+
+            if (System.currentTimeMillis() - idle.connectedMs > maxIdleTimeMs) {
+                numEvicted.incrementAndGet();
+                closeQuietly(idle.socket);
+            } else if (!isHealthy(idle.socket)) {
+                numUnhealthy.incrementAndGet();
+                closeQuietly(idle.socket);
+            } else {
+                return idle.socket;
+            }
+        }
+    }
+
+    /**
+     * an unused socket should have nothing to read; EOF or unexpected data means the server dropped it
+     * - checked with a non-blocking read so a healthy socket is handed out without waiting
+     */
+    private static boolean isHealthy(Socket socket) {
+        if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown()) return false;
+        SocketChannel channel = socket.getChannel();
+        if (channel == null) return true;
+        try {
+            channel.configureBlocking(false);
+            int numRead = channel.read(ByteBuffer.allocate(1));
+            channel.configureBlocking(true);
+            // 0 = nothing to read; connection is still open
+            return numRead == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void scheduleRefill() {
+        if (isClosed || !isRefilling.compareAndSet(false, true)) return;
+        refillExecutor.submit(() -> {
+            try {
+                refill();
+            } finally {
+                isRefilling.set(false);
+            }
+        });
+    }
+
+    private void refill() {
+        while (!isClosed) {
+            synchronized (idleSockets) {
+                if (idleSockets.size() >= maxIdle) return;
+            }
+            Socket socket;
+            try {
+                socket = connect();
+            } catch (IOException e) {
+                // server likely not running; try again on next request
+                return;
+            }
+            synchronized (idleSockets) {
+                if (isClosed || idleSockets.size() >= maxIdle) {
+                    closeQuietly(socket);
+                    return;
+                }
+                idleSockets.addLast(new IdleSocket(socket));
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        // NOTE: channel-backed socket so sync transfers can use FileChannel.transferTo/transferFrom and idle sockets
+        // can be checked without blocking (see JadbConnection.createTransport() about interrupts)
+        Socket socket = SocketChannel.open(new InetSocketAddress(host, port)).socket();
+        socket.setTcpNoDelay(true);
+        numCreated.incrementAndGet();
+        return socket;
+    }
+
+    /**
+     * close all idle sockets and stop refilling
+     */
+    public void close() {
+        isClosed = true;
+        synchronized (idleSockets) {
+            for (IdleSocket idle : idleSockets) {
+                closeQuietly(idle.socket);
+            }
+            idleSockets.clear();
+        }
+        refillExecutor.shutdownNow();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public int getIdleCount() {
+        synchronized (idleSockets) {
+            return idleSockets.size();
+        }
+    }
+
+    /**
+     * @return number of sockets opened to the adb server
+     */
+    public long getCreatedCount() {
+        return numCreated.get();
+    }
+
+    /**
+     * @return number of requests served by a pre-connected socket
+     */
+    public long getReusedCount() {
+        return numReused.get();
+    }
+
+    /**
+     * @return number of requests that had to connect on the calling thread
+     */
+    public long getMissedCount() {
+        return numMissed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "created:" + numCreated.get() +
+                ", reused:" + numReused.get() +
+                ", missed:" + numMissed.get() +
+                ", evicted:" + numEvicted.get() +
+                ", unhealthy:" + numUnhealthy.get() +
+                ", idle:" + getIdleCount();
+    }
+}
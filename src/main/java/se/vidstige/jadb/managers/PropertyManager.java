@@ -8,6 +8,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -16,7 +17,7 @@ import java.util.regex.Pattern;
  * A class which works with properties, uses getprop and setprop methods of android shell
  */
 public class PropertyManager {
-    private final Pattern pattern = Pattern.compile("^\\[([a-zA-Z0-9_.-]*)]:.\\[([^\\[\\]]*)]");
+    private static final Pattern pattern = Pattern.compile("^\\[([a-zA-Z0-9_.-]*)]:.\\[([^\\[\\]]*)]");
     private final JadbDevice device;
 
     public PropertyManager(JadbDevice device) {
@@ -52,4 +53,20 @@ public class PropertyManager {
 
         return result;
     }
+
+    /**
+     * parse getprop output that was already read (ie: as part of a larger script)
+     */
+    public static Map<String, String> parseProp(List<String> lineList) {
+        HashMap<String, String> result = new HashMap<>();
+        if (lineList == null) return result;
+        Matcher matcher = pattern.matcher("");
+        for (String line : lineList) {
+            matcher.reset(line);
+            if (matcher.find() && matcher.groupCount() >= 2) {
+                result.put(matcher.group(1), matcher.group(2));
+            }
+        }
+        return result;
+    }
 }